@@ -0,0 +1,100 @@
+package edu.cs340.bench;
+
+import edu.cs340.interpreter.CompiledExpression;
+import edu.cs340.interpreter.Environment;
+import edu.cs340.interpreter.Interpreter;
+import edu.cs340.parser.ASTNode;
+import edu.cs340.parser.Parser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation reduces trees in place, so every benchmark parses a fresh tree first.
+ * {@link ParserBenchmark} gives the parse cost to subtract.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterpreterBenchmark {
+
+    private String arithmetic;
+    private String comparison;
+    private CompiledExpression compiledComparison;
+
+    @Setup
+    public void setup() {
+        WorkloadGenerator gen = new WorkloadGenerator();
+        arithmetic = gen.arithmetic(50);
+        comparison = gen.comparison();
+        compiledComparison = Interpreter.compile("gt(x)(y)", "x", "y");
+    }
+
+    @Benchmark
+    public ASTNode arithmetic() {
+        return Interpreter.eval(Parser.parse(arithmetic));
+    }
+
+    @Benchmark
+    public ASTNode gt() {
+        return Interpreter.eval(Parser.parse("gt(17.5)(3)"));
+    }
+
+    @Benchmark
+    public ASTNode lt() {
+        return Interpreter.eval(Parser.parse("lt(17.5)(3)"));
+    }
+
+    @Benchmark
+    public ASTNode eq() {
+        return Interpreter.eval(Parser.parse("eq(17.5)(3)"));
+    }
+
+    @Benchmark
+    public ASTNode generatedComparison() {
+        return Interpreter.eval(Parser.parse(comparison));
+    }
+
+    /**
+     * Same work as {@link #gt()} without the parse, through the embedding API.
+     */
+    @Benchmark
+    public long compiledGt() {
+        return compiledComparison.evaluateLong(17, 3);
+    }
+
+    @Benchmark
+    public ASTNode factorial() {
+        return Interpreter.eval(Parser.parse("factorial(6)"));
+    }
+
+    @Benchmark
+    public ASTNode mult() {
+        return Interpreter.eval(Parser.parse("mult(6)(7)"));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 20)
+    @Fork(5)
+    public Environment loadDefaultFunctionsCold() {
+        return loadDefaultFunctions();
+    }
+
+    @Benchmark
+    public Environment loadDefaultFunctionsWarm() {
+        return loadDefaultFunctions();
+    }
+
+    private static Environment loadDefaultFunctions() {
+        Environment env = new Environment();
+        return Interpreter.withEnvironment(env, () -> {
+            Interpreter.loadDefaultFunctions();
+            return env;
+        });
+    }
+}
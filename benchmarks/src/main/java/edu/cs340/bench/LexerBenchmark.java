@@ -0,0 +1,39 @@
+package edu.cs340.bench;
+
+import edu.cs340.lexer.Lexer;
+import edu.cs340.lexer.Token;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexerBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int terms;
+
+    private String src;
+    private Lexer lexer;
+
+    @Setup
+    public void setup() {
+        src = new WorkloadGenerator().arithmetic(terms);
+        lexer = new Lexer();
+    }
+
+    @Benchmark
+    public void nextToken(Blackhole bh) {
+        lexer.init(src);
+        Token t;
+        do {
+            t = lexer.nextToken();
+            bh.consume(t);
+        } while (t.type() != Token.Type.EOF);
+    }
+}
@@ -0,0 +1,39 @@
+package edu.cs340.bench;
+
+import edu.cs340.parser.ASTNode;
+import edu.cs340.parser.Parser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"10", "100", "500"})
+    public int size;
+
+    private String shallow;
+    private String deep;
+
+    @Setup
+    public void setup() {
+        WorkloadGenerator gen = new WorkloadGenerator();
+        shallow = gen.arithmetic(size);
+        deep = gen.nested(size);
+    }
+
+    @Benchmark
+    public ASTNode parseShallow() {
+        return Parser.parse(shallow);
+    }
+
+    @Benchmark
+    public ASTNode parseDeep() {
+        return Parser.parse(deep);
+    }
+}
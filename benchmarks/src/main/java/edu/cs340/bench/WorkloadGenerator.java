@@ -0,0 +1,64 @@
+package edu.cs340.bench;
+
+import java.util.Random;
+
+/**
+ * Builds synthetic calculator inputs from a fixed seed, so every run of a benchmark sees exactly the same workload.
+ */
+public class WorkloadGenerator {
+
+    public static final long DEFAULT_SEED = 340L;
+
+    private static final String[] binaryOps = new String[]{"+", "-", "*", "/", "%"};
+    private static final String[] comparisons = new String[]{"gt", "lt", "eq"};
+
+    private final Random random;
+
+    public WorkloadGenerator() {
+        this(DEFAULT_SEED);
+    }
+
+    public WorkloadGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * A flat chain of terms, e.g. {@code 3.25 * 7 + 12 % 5 - 0.5}.
+     */
+    public String arithmetic(int terms) {
+        StringBuilder sb = new StringBuilder(number());
+        for (int i = 1; i < terms; i++) {
+            sb.append(' ').append(binaryOps[random.nextInt(binaryOps.length)]).append(' ').append(number());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * An expression nested depth levels deep, e.g. {@code (1 + (2 * (3 - 4)))}.
+     */
+    public String nested(int depth) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            sb.append('(').append(number()).append(' ').append(binaryOps[random.nextInt(binaryOps.length)]).append(' ');
+        }
+        sb.append(number());
+        for (int i = 0; i < depth; i++) sb.append(')');
+        return sb.toString();
+    }
+
+    /**
+     * A single prelude comparison such as {@code lt(12)(7.5)}.
+     */
+    public String comparison() {
+        return comparisons[random.nextInt(comparisons.length)] + "(" + number() + ")(" + number() + ")";
+    }
+
+    /**
+     * Never zero, so generated divisions and remainders are always defined.
+     */
+    public String number() {
+        int whole = 1 + random.nextInt(99);
+        if (random.nextBoolean()) return String.valueOf(whole);
+        return whole + "." + (1 + random.nextInt(99));
+    }
+}
@@ -1,17 +1,32 @@
 package edu.cs340;
 
+import edu.cs340.batch.BatchCoordinator;
+import edu.cs340.batch.BatchWorker;
+import edu.cs340.interpreter.Budget;
 import edu.cs340.interpreter.Interpreter;
 import edu.cs340.lexer.Lexer;
 import edu.cs340.lexer.Token;
+import edu.cs340.metrics.EvaluationEvent;
+import edu.cs340.metrics.Metrics;
+import edu.cs340.metrics.Profiler;
 import edu.cs340.parser.ASTNode;
 import edu.cs340.parser.Parser;
+import edu.cs340.parser.Printer;
+import edu.cs340.server.EvaluationServer;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.regex.Pattern;
 
 public class Main {
 
     private static final Scanner in = new Scanner(System.in);
+    private static final Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+    private static final Printer printer = Printer.defaults();
     private static final Pattern exit = Pattern.compile("^\\s*exit\\s*", Pattern.CASE_INSENSITIVE);
     private static final Pattern lexCommand = Pattern.compile("^\\s*lex\\s*.*\\s*", Pattern.CASE_INSENSITIVE);
     private static final Pattern parseCommand = Pattern.compile("^\\s*parse\\s*.*\\s*", Pattern.CASE_INSENSITIVE);
@@ -23,23 +38,46 @@ public class Main {
     private static final Pattern listVarCommand = Pattern.compile("^\\s*list vars\\s*.*\\s*", Pattern.CASE_INSENSITIVE);
     private static final Pattern dropVarCommand = Pattern.compile("^\\s*drop var\\s*.*\\s*", Pattern.CASE_INSENSITIVE);
     private static final Pattern clearVarCommand = Pattern.compile("^\\s*clear vars\\s*", Pattern.CASE_INSENSITIVE);
+    private static final Pattern profileCommand = Pattern.compile("^\\s*profile\\s*.*\\s*", Pattern.CASE_INSENSITIVE);
+    private static final Pattern saveCommand = Pattern.compile("^\\s*save\\s+.*\\s*", Pattern.CASE_INSENSITIVE);
+    private static final Pattern loadCommand = Pattern.compile("^\\s*load\\s+.*\\s*", Pattern.CASE_INSENSITIVE);
+    private static final Pattern metricsCommand = Pattern.compile("^\\s*metrics\\s*.*\\s*", Pattern.CASE_INSENSITIVE);
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equalsIgnoreCase("serve")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : EvaluationServer.DEFAULT_PORT;
+            new EvaluationServer(port).serve();
+            return;
+        }
+        if (args.length > 0 && args[0].equalsIgnoreCase("batch")) {
+            batch(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equalsIgnoreCase("worker")) {
+            new BatchWorker().run(args.length > 1 ? Path.of(args[1]) : null, System.in, System.out);
+            return;
+        }
 
-    public static void main(String[] args) {
         intro();
         String line;
         while (true) {
             System.out.print("=> ");
+            if (!in.hasNextLine()) break;
             line = in.nextLine();
 
             try {
                 if (exit.asPredicate().test(line)) break;
                 else if (lexCommand.asPredicate().test(line)) lex(line.replaceFirst("\\s*lex", ""));
                 else if (parseCommand.asPredicate().test(line)) parse(line.replaceFirst("\\s*parse", ""));
+                else if (profileCommand.asPredicate().test(line)) profile(line.replaceFirst("\\s*profile", ""));
                 else if (helpCommand.asPredicate().test(line)) help(line.replaceFirst("\\s*help", ""));
                 else if (introCommand.asPredicate().test(line)) intro();
                 else if (listVarCommand.asPredicate().test(line)) listVars(line.replaceFirst("\\s*list vars\\s*", ""));
                 else if (dropVarCommand.asPredicate().test(line)) dropVar(line.replaceFirst("\\s*drop var\\s*", ""));
                 else if (clearVarCommand.asPredicate().test(line)) clearVars();
+                else if (saveCommand.asPredicate().test(line)) save(line.replaceFirst("\\s*save\\s*", ""));
+                else if (loadCommand.asPredicate().test(line)) load(line.replaceFirst("\\s*load\\s*", ""));
+                else if (metricsCommand.asPredicate().test(line)) metrics(line.replaceFirst("\\s*metrics\\s*", ""));
                 else interpret(line);
             } catch (Exception e) {
                 System.out.println("Something went wrong: " + e.getMessage());
@@ -53,18 +91,57 @@ public class Main {
         String line3 = "\t+, -, /, *, ^ (exponentiation)\n\n";
         String line4 = "It also supports: \n";
         String line5 = "\t// (floor division), % (modulus)\n";
-        String line6 = "\tBuilt in function: pow(x, y), sqrt(x), root(x, y), fact(x)\n\n";
+        String line6 = "\tBuilt in function: pow(x, y), sqrt(x), root(x, y), fact(x), sum(f)(a)(b), product(f)(a)(b), fold(g)(init)(a)(b)\n\n";
         String line7 = "If you want to see the tokenization output of your expression, type in lex followed by your expression, e.g. lex {expr}\n";
         String line8 = "If you want to a AST representation of your expression, type in parse followed by your expression, e.g. parse {expr}\n";
-        String line9 = "If you want to see the result of evaluation your expression, type in your expression, e.g. {expr}\n\n";
-        String line10 = "If you ever need help, type in help.\n";
-        System.out.printf("%s%s%s%s%s%s%s%s%s%s%n", line1, line2, line3, line4, line5, line6, line7, line8, line9, line10);
+        String line9 = "If you want to see the result of evaluation your expression, type in your expression, e.g. {expr}\n";
+        String line10 = "If you want to see which functions evaluating your expression applied, type in profile followed by your expression, e.g. profile {expr}\n\n";
+        String line11 = "If you ever need help, type in help.\n";
+        System.out.printf("%s%s%s%s%s%s%s%s%s%s%s%n", line1, line2, line3, line4, line5, line6, line7, line8, line9, line10, line11);
+    }
+
+    /**
+     * batch input-file [workers] [definitions-snapshot]: evaluates every line of the input file across worker
+     * processes, see {@link BatchCoordinator}, and prints the results in input order.
+     */
+    private static void batch(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: batch <input file> [workers] [definitions snapshot]");
+            System.exit(2);
+        }
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        Path definitions = args.length > 3 ? Path.of(args[3]) : null;
+
+        long start = System.nanoTime();
+        try {
+            long lines = new BatchCoordinator(Path.of(args[1]), workers, definitions).run(out);
+            System.err.println("Evaluated " + lines + " lines with " + workers + " workers in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     public static void prettyPrint(ASTNode ast) {
-        StringBuilder sb = new StringBuilder();
-        prettyPrint(ast, 0, sb);
-        System.out.println(sb);
+        try {
+            printer.tree(ast, out);
+            out.flush();
+        } catch (IOException ex) {
+            System.out.println(ex.getMessage());
+        }
+    }
+
+    /**
+     * Writes a result followed by a line break, straight to the console.
+     */
+    public static void print(ASTNode ast) {
+        try {
+            printer.print(ast, out);
+            out.append(System.lineSeparator());
+            out.flush();
+        } catch (IOException ex) {
+            System.out.println(ex.getMessage());
+        }
     }
 
     public static void inOrderPrint(ASTNode ast) {
@@ -78,20 +155,6 @@ public class Main {
         if (ast.children().size() >= 2) inOrderPrint(ast.children().get(1));
     }
 
-    public static void prettyPrint(ASTNode ast, int d, StringBuilder accumulator) {
-        StringBuilder tabs = new StringBuilder();
-        for (int i = 0; i < d; i++) tabs.append('\t');
-
-        accumulator.append(tabs).append(ast).append('\n');
-
-        List<ASTNode> children = ast.children();
-        if (Objects.isNull(children)) return;
-
-        for (ASTNode child : children) {
-            prettyPrint(child, d + 1, accumulator);
-        }
-    }
-
     public static void help(String what) {
         if (empty.asPredicate().test(what)) {
             String line1 = "Useful commands: \n";
@@ -99,8 +162,11 @@ public class Main {
             String line3 = "\t\'list vars\' -- to have all the known variables printed\n";
             String line4 = "\t\'drop {var_name}\' -- to have that function unregistered\n";
             String line5 = "\t\'clear vars\' -- to have all functions unregistered\n";
-            String line6 = "\t\'help {command_name}\' -- to for a longer explanation of how a command works";
-            System.out.printf("%s%s%s%s%s%s%n", line1, line2, line3, line4, line5, line6);
+            String line6 = "\t\'save {file}\' -- to have all your definitions written to a snapshot file\n";
+            String line7 = "\t\'load {file}\' -- to have the definitions of a snapshot file registered\n";
+            String line8 = "\t\'metrics [reset]\' -- to have the pipeline counters printed, or reset\n";
+            String line9 = "\t\'help {command_name}\' -- to for a longer explanation of how a command works";
+            System.out.printf("%s%s%s%s%s%s%s%s%s%n", line1, line2, line3, line4, line5, line6, line7, line8, line9);
         }
     }
 
@@ -125,9 +191,7 @@ public class Main {
     public static void parse(String line) {
         try {
             ASTNode ast = Parser.parse(line);
-            StringBuilder accumulator = new StringBuilder();
-            prettyPrint(ast, 0, accumulator);
-            System.out.print(accumulator);
+            prettyPrint(ast);
         } catch (IllegalArgumentException ex) {
             System.out.println(ex.getMessage());
         }
@@ -135,15 +199,69 @@ public class Main {
 
     public static void interpret(String line) {
         try {
-            ASTNode res = Interpreter.eval(line);
-            if (Objects.nonNull(res)) {
-                ASTNode oldRes = null;
-                while (!res.equals(oldRes)) {
-                    oldRes = res;
-                    res = Interpreter.eval(res);
-                }
-                System.out.println(res.consolePrint());
+            ASTNode res = evaluate(line);
+            if (Objects.nonNull(res)) print(res);
+        } catch (IllegalArgumentException | IllegalStateException ex) {
+            System.out.println(ex.getMessage());
+        }
+    }
+
+    /**
+     * Evaluates the line and keeps re-evaluating the result until it stops changing, within the default budget.
+     */
+    public static ASTNode evaluate(String line) {
+        return Interpreter.withBudget(Budget.defaults(), () -> reduce(line));
+    }
+
+    private static ASTNode reduce(String line) {
+        if (!Metrics.enabled()) return reduce(line, new int[1]);
+
+        EvaluationEvent event = new EvaluationEvent();
+        event.begin();
+        long start = System.nanoTime();
+
+        int[] rounds = new int[1];
+        ASTNode res = reduce(line, rounds);
+
+        Metrics.evaluated(System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.source = line;
+            event.rounds = rounds[0];
+            event.commit();
+        }
+        return res;
+    }
+
+    private static ASTNode reduce(String line, int[] rounds) {
+        ASTNode res = Interpreter.eval(line);
+        rounds[0] = 1;
+        if (Objects.nonNull(res)) {
+            ASTNode oldRes = null;
+            while (!res.equals(oldRes)) {
+                oldRes = res;
+                res = Interpreter.eval(res);
+                rounds[0]++;
             }
+            res = Interpreter.normalize(res);
+        }
+        return res;
+    }
+
+    /**
+     * The line the console shows when evaluating failed: errors in the input speak for themselves, anything else
+     * is reported as something that went wrong.
+     */
+    public static String errorMessage(Exception ex) {
+        if (ex instanceof IllegalArgumentException || ex instanceof IllegalStateException) return ex.getMessage();
+        return "Something went wrong: " + ex.getMessage();
+    }
+
+    public static void profile(String line) {
+        try {
+            Profiler profiler = new Profiler();
+            ASTNode res = profiler.run(() -> evaluate(line));
+            if (Objects.nonNull(res)) print(res);
+            System.out.print(profiler.report(12));
         } catch (IllegalArgumentException | IllegalStateException ex) {
             System.out.println(ex.getMessage());
         }
@@ -161,4 +279,29 @@ public class Main {
         Interpreter.clearVars();
     }
 
+    public static void save(String file) {
+        try {
+            int saved = Interpreter.save(Path.of(file.trim()));
+            System.out.println("Saved " + saved + " definitions to " + file.trim());
+        } catch (IOException ex) {
+            System.out.println("Could not save to " + file.trim() + ": " + ex.getMessage());
+        }
+    }
+
+    public static void load(String file) {
+        try {
+            int loaded = Interpreter.load(Path.of(file.trim()));
+            System.out.println("Loaded " + loaded + " definitions from " + file.trim());
+        } catch (IOException ex) {
+            System.out.println("Could not load " + file.trim() + ": " + ex.getMessage());
+        } catch (IllegalArgumentException ex) {
+            System.out.println(ex.getMessage());
+        }
+    }
+
+    public static void metrics(String args) {
+        if (args.trim().equalsIgnoreCase("reset")) Metrics.reset();
+        else System.out.print(Metrics.snapshot());
+    }
+
 }
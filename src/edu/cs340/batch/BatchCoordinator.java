@@ -0,0 +1,385 @@
+package edu.cs340.batch;
+
+import edu.cs340.Main;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluates a file of independent expressions, one per line, across several worker JVMs on this machine, so a
+ * large job is not limited by the heap and collector of a single process.
+ *
+ * The input is cut into shards of consecutive lines (calc.batch.shard, 64 by default) that idle workers take from
+ * a shared queue. Every worker is a {@link BatchWorker} process started from the same class path with the same
+ * calc.* system properties, so it has the same prelude, and the same definitions snapshot. It talks to the
+ * coordinator over its stdin and stdout, with up to calc.batch.window lines (16 by default) sent ahead of the
+ * answers, which a separate thread collects in order. When a worker dies, the lines of its shard it had not answered yet go
+ * back to the front of the queue and the worker is restarted, up to {@value #MAX_RESTARTS} times without finishing
+ * a shard in between. A line that was being evaluated in {@value #MAX_ATTEMPTS} crashes fails on its own rather
+ * than taking more workers down.
+ *
+ * Results are written in input order, one line per input line, as {@code OK<TAB>result} or {@code ERR<TAB>message}.
+ */
+public class BatchCoordinator {
+
+    private static final int SHARD_SIZE = Integer.getInteger("calc.batch.shard", 64);
+    private static final int WINDOW = Math.max(1, Integer.getInteger("calc.batch.window", 16));
+    private static final int MAX_RESTARTS = 3;
+    private static final int MAX_ATTEMPTS = 2;
+
+    /* Shards read ahead per worker; bounds how much of the input is held in memory. */
+    private static final int SHARDS_AHEAD = 4;
+
+    private final Path input;
+    private final int workers;
+    private final Path definitions;
+    private final List<String> entryPoint;
+
+    private final BlockingDeque<Shard> queue = new LinkedBlockingDeque<>();
+    private final Map<Long, Integer> attempts = new HashMap<>();
+    private final Semaphore readAhead;
+    private Merger merger;
+
+    /**
+     * @param definitions snapshot every worker loads before its first expression, or null
+     */
+    public BatchCoordinator(Path input, int workers, Path definitions) {
+        this(input, workers, definitions, List.of(Main.class.getName(), "worker"));
+    }
+
+    /**
+     * @param entryPoint main class and leading arguments that start a worker, the definitions path is appended
+     */
+    BatchCoordinator(Path input, int workers, Path definitions, List<String> entryPoint) {
+        if (workers < 1) throw new IllegalArgumentException("At least one worker is needed, got " + workers);
+        this.input = input;
+        this.workers = workers;
+        this.definitions = definitions;
+        this.entryPoint = entryPoint;
+        this.readAhead = new Semaphore(workers * SHARDS_AHEAD);
+    }
+
+    /**
+     * Runs the whole job and returns the number of lines evaluated.
+     */
+    public long run(Writer output) throws IOException, InterruptedException {
+        merger = new Merger(output);
+
+        Thread reader = new Thread(this::read, "batch-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        List<Thread> slots = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            Slot slot = new Slot(i);
+            Thread t = new Thread(slot::run, "batch-worker-" + i);
+            t.setDaemon(true);
+            t.start();
+            slots.add(t);
+        }
+
+        while (!merger.complete()) {
+            if (slots.stream().anyMatch(Thread::isAlive)) {
+                merger.awaitProgress(100);
+                continue;
+            }
+            // Every worker gave up, what is left fails without being evaluated.
+            Shard shard = queue.poll(100, TimeUnit.MILLISECONDS);
+            if (Objects.isNull(shard)) continue;
+            for (int i = 0; i < shard.lines.size(); i++) merger.accept(shard.first + i, "ERR\tNo worker left to evaluate this expression");
+            shard.done();
+        }
+        merger.rethrow();
+        output.flush();
+        return merger.total();
+    }
+
+    private void read() {
+        try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            long index = 0;
+            List<String> lines = new ArrayList<>(SHARD_SIZE);
+            String line;
+            while ((line = in.readLine()) != null) {
+                lines.add(line);
+                if (lines.size() == SHARD_SIZE) {
+                    readAhead.acquire();
+                    queue.addLast(new Shard(index, lines));
+                    index += lines.size();
+                    lines = new ArrayList<>(SHARD_SIZE);
+                }
+            }
+            if (!lines.isEmpty()) {
+                readAhead.acquire();
+                queue.addLast(new Shard(index, lines));
+                index += lines.size();
+            }
+            merger.total(index);
+        } catch (IOException ex) {
+            merger.fail(ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * One worker process at a time, restarted when it dies.
+     */
+    private class Slot {
+        private final int id;
+        private int restarts;
+        private Process process;
+        private BufferedWriter to;
+        private BufferedReader from;
+
+        Slot(int id) {
+            this.id = id;
+        }
+
+        void run() {
+            try {
+                while (!merger.complete()) {
+                    Shard shard = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (Objects.isNull(shard)) continue;
+                    if (evaluate(shard)) {
+                        restarts = 0;
+                    } else if (++restarts > MAX_RESTARTS) {
+                        System.err.println("Worker " + id + " crashed " + restarts + " times in a row, giving up on it");
+                        return;
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                stop();
+            }
+        }
+
+        /**
+         * Returns false when the worker died; the lines it didn't answer are queued again by then.
+         */
+        private boolean evaluate(Shard shard) throws InterruptedException {
+            Responses responses = null;
+            try {
+                if (Objects.isNull(process)) start();
+                responses = new Responses(shard, from);
+                responses.start();
+
+                for (int sent = 0; sent < shard.lines.size(); sent++) {
+                    if (!responses.hasRoom(sent)) {
+                        to.flush();
+                        responses.awaitRoom(sent);
+                    }
+                    to.write(Long.toString(shard.first + sent));
+                    to.write('\t');
+                    to.write(shard.lines.get(sent));
+                    to.write('\n');
+                }
+                to.flush();
+
+                responses.join();
+                responses.rethrow();
+                shard.done();
+                return true;
+            } catch (IOException ex) {
+                stop();
+                int answered = 0;
+                if (Objects.nonNull(responses)) {
+                    responses.join();
+                    answered = responses.answered();
+                }
+                System.err.println("Worker " + id + " failed at line " + (shard.first + answered + 1) + ": " + ex.getMessage());
+                requeue(shard, answered);
+                return false;
+            }
+        }
+
+        private void start() throws IOException {
+            List<String> command = new ArrayList<>();
+            command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+            for (String name : System.getProperties().stringPropertyNames()) {
+                if (name.startsWith("calc.")) command.add("-D" + name + "=" + System.getProperty(name));
+            }
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.addAll(entryPoint);
+            if (Objects.nonNull(definitions)) command.add(definitions.toString());
+
+            process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            to = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+            from = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        private void stop() {
+            if (Objects.isNull(process)) return;
+            try {
+                to.close();
+            } catch (IOException ignored) {
+                // The worker is gone already.
+            }
+            process.destroy();
+            process = null;
+        }
+    }
+
+    /**
+     * Collects the answers of one worker to one shard, in order, while the slot is still sending it lines.
+     * It ends after the last answer, or when the worker stops answering.
+     */
+    private class Responses extends Thread {
+        private final Shard shard;
+        private final BufferedReader from;
+        private int answered;
+        private IOException failure;
+
+        Responses(Shard shard, BufferedReader from) {
+            super(Thread.currentThread().getName() + "-responses");
+            setDaemon(true);
+            this.shard = shard;
+            this.from = from;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (answered() < shard.lines.size()) {
+                    long index = shard.first + answered();
+                    String response = from.readLine();
+                    if (Objects.isNull(response)) throw new EOFException("worker exited");
+                    int tab = response.indexOf('\t');
+                    if (tab < 0 || !response.substring(0, tab).equals(Long.toString(index)))
+                        throw new IOException("unexpected response " + response);
+                    merger.accept(index, response.substring(tab + 1));
+                    synchronized (this) {
+                        answered++;
+                        notifyAll();
+                    }
+                }
+            } catch (IOException ex) {
+                synchronized (this) {
+                    failure = ex;
+                    notifyAll();
+                }
+            }
+        }
+
+        synchronized int answered() {
+            return answered;
+        }
+
+        /* Whether one more line can be sent after sent lines without going over the window. */
+        synchronized boolean hasRoom(int sent) {
+            return sent - answered < WINDOW;
+        }
+
+        synchronized void awaitRoom(int sent) throws IOException, InterruptedException {
+            while (!hasRoom(sent) && Objects.isNull(failure)) wait();
+            rethrow();
+        }
+
+        synchronized void rethrow() throws IOException {
+            if (Objects.nonNull(failure)) throw failure;
+        }
+    }
+
+    /**
+     * Puts the unanswered rest of a shard back at the front of the queue. The line the worker died on fails
+     * instead once it has brought down {@value #MAX_ATTEMPTS} workers.
+     */
+    private void requeue(Shard shard, int answered) {
+        long culprit = shard.first + answered;
+        int tries;
+        synchronized (attempts) {
+            tries = attempts.merge(culprit, 1, Integer::sum);
+        }
+        if (tries >= MAX_ATTEMPTS) {
+            merger.accept(culprit, "ERR\tWorker crashed evaluating this expression");
+            answered++;
+        }
+        if (answered >= shard.lines.size()) {
+            shard.done();
+            return;
+        }
+        queue.addFirst(shard.rest(answered));
+    }
+
+    private class Shard {
+        private final long first;
+        private final List<String> lines;
+
+        Shard(long first, List<String> lines) {
+            this.first = first;
+            this.lines = lines;
+        }
+
+        /* The remainder carries over the read ahead permit, only the last part of a shard releases it. */
+        Shard rest(int from) {
+            return new Shard(first + from, lines.subList(from, lines.size()));
+        }
+
+        void done() {
+            readAhead.release();
+        }
+    }
+
+    /**
+     * Writes results out as soon as every earlier line has its result.
+     */
+    private static class Merger {
+        private final Writer out;
+        private final TreeMap<Long, String> pending = new TreeMap<>();
+        private long next;
+        private long total = -1;
+        private IOException failure;
+
+        Merger(Writer out) {
+            this.out = out;
+        }
+
+        synchronized void accept(long index, String result) {
+            pending.put(index, result);
+            try {
+                while (pending.containsKey(next)) {
+                    out.write(pending.remove(next));
+                    out.write('\n');
+                    next++;
+                }
+            } catch (IOException ex) {
+                failure = ex;
+            }
+            notifyAll();
+        }
+
+        synchronized void total(long total) {
+            this.total = total;
+            notifyAll();
+        }
+
+        synchronized long total() {
+            return total;
+        }
+
+        synchronized void fail(IOException ex) {
+            failure = ex;
+            notifyAll();
+        }
+
+        synchronized boolean complete() {
+            return Objects.nonNull(failure) || (total >= 0 && next >= total);
+        }
+
+        synchronized void awaitProgress(long millis) throws InterruptedException {
+            if (!complete()) wait(millis);
+        }
+
+        synchronized void rethrow() throws IOException {
+            if (Objects.nonNull(failure)) throw failure;
+        }
+    }
+}
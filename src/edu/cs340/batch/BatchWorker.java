@@ -0,0 +1,56 @@
+package edu.cs340.batch;
+
+import edu.cs340.Main;
+import edu.cs340.interpreter.Interpreter;
+import edu.cs340.parser.ASTNode;
+import edu.cs340.parser.Printer;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * The process side of {@link BatchCoordinator}: evaluates the expressions it reads from stdin, one per line as
+ * {@code index<TAB>expression}, and answers each on stdout with {@code index<TAB>OK<TAB>result} or
+ * {@code index<TAB>ERR<TAB>message}, in order.
+ */
+public class BatchWorker {
+
+    private final Printer printer = Printer.defaults();
+
+    /**
+     * @param definitions snapshot written by the save command to register before the first expression, or null
+     */
+    public void run(Path definitions, InputStream input, OutputStream output) throws IOException {
+        if (Objects.nonNull(definitions)) Interpreter.load(definitions);
+
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab < 0) throw new IOException("Expected a line of the form index<TAB>expression, got " + line);
+
+                out.write(line, 0, tab);
+                respond(line.substring(tab + 1), out);
+                out.write('\n');
+                if (!in.ready()) out.flush();
+            }
+            out.flush();
+        }
+    }
+
+    private void respond(String expression, Writer out) throws IOException {
+        ASTNode res;
+        try {
+            res = Main.evaluate(expression);
+        } catch (RuntimeException ex) {
+            out.write("\tERR\t");
+            out.write(String.valueOf(ex.getMessage()).replace('\n', ' '));
+            return;
+        }
+        out.write("\tOK\t");
+        if (Objects.nonNull(res)) printer.print(res, out);
+    }
+}
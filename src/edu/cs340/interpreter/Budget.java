@@ -0,0 +1,269 @@
+package edu.cs340.interpreter;
+
+import edu.cs340.number.Num;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Limits on the work a single evaluation may do: reduction steps, wall clock time, digits of any intermediate
+ * number and tree nodes allocated while applying functions.
+ *
+ * The interpreter checks the budget of the current thread cooperatively, from eval, while copying function bodies
+ * and inside the numeric loops, and stops with a {@link BudgetExceededException} as soon as one limit is crossed.
+ */
+public final class Budget {
+
+    public static final Budget UNLIMITED = new Budget(Long.MAX_VALUE, null, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+    /* The clock is only read every so many steps, reading it on every step would cost more than the step. */
+    private static final int CLOCK_INTERVAL = 1024;
+
+    /* Steps and nodes a thread counts locally before adding them to the totals of a Share. */
+    private static final int SHARED_BATCH = 64;
+
+    private static final ThreadLocal<Meter> current = new ThreadLocal<>();
+
+    private final long maxSteps;
+    private final Duration timeLimit;
+    private final int maxDigits;
+    private final long maxNodes;
+
+    /**
+     * @param timeLimit null for no deadline
+     */
+    public Budget(long maxSteps, Duration timeLimit, int maxDigits, long maxNodes) {
+        this.maxSteps = maxSteps;
+        this.timeLimit = timeLimit;
+        this.maxDigits = maxDigits;
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * The default budget, overridable with the calc.budget.steps, calc.budget.millis, calc.budget.digits and
+     * calc.budget.nodes system properties.
+     */
+    public static Budget defaults() {
+        long millis = Long.getLong("calc.budget.millis", 30_000L);
+        return new Budget(
+                Long.getLong("calc.budget.steps", 200_000_000L),
+                millis > 0 ? Duration.ofMillis(millis) : null,
+                Integer.getInteger("calc.budget.digits", 100_000),
+                Long.getLong("calc.budget.nodes", 200_000_000L));
+    }
+
+    public long maxSteps() {
+        return maxSteps;
+    }
+
+    public Duration timeLimit() {
+        return timeLimit;
+    }
+
+    public int maxDigits() {
+        return maxDigits;
+    }
+
+    public long maxNodes() {
+        return maxNodes;
+    }
+
+    /**
+     * Runs action with this budget. A budget that is already running on this thread, e.g. for a nested
+     * evaluation, keeps counting instead of being replaced.
+     */
+    <T> T run(Supplier<T> action) {
+        if (Objects.nonNull(current.get())) return action.get();
+
+        current.set(new Meter(this));
+        try {
+            return action.get();
+        } catch (StackOverflowError err) {
+            throw new BudgetExceededException("Evaluation stopped: expression nested too deeply");
+        } finally {
+            current.remove();
+        }
+    }
+
+    /**
+     * The budget running on this thread, to carry over to work split off to other threads. Work split off again
+     * from such a thread counts against the same share.
+     */
+    static Share share() {
+        Meter m = current.get();
+        if (m instanceof SharedMeter) return ((SharedMeter) m).share;
+        return new Share(m);
+    }
+
+    static void step() {
+        Meter m = current.get();
+        if (Objects.nonNull(m)) m.step();
+    }
+
+    static void nodes(long count) {
+        Meter m = current.get();
+        if (Objects.nonNull(m)) m.nodes(count);
+    }
+
+    static void digits(BigDecimal value) {
+        Meter m = current.get();
+        if (Objects.nonNull(m)) m.digits(value.precision());
+    }
+
+    static void digits(Num value) {
+        Meter m = current.get();
+        if (Objects.nonNull(m)) m.digits(value.digits());
+    }
+
+    /**
+     * Fails before an exact power is computed whose numerator or denominator would have more digits than allowed.
+     */
+    static void powDigits(Num base, Num exp) {
+        Meter m = current.get();
+        if (Objects.isNull(m) || base.isZero()) return;
+        double digitsPerFactor = Math.max(log10(base.numerator().abs()), log10(base.denominator()));
+        m.digits((long) Math.min(Long.MAX_VALUE, Math.ceil(digitsPerFactor * exp.toBigDecimal().abs().doubleValue())));
+    }
+
+    private static double log10(BigInteger value) {
+        if (value.bitLength() < 1000) return Math.log10(value.doubleValue());
+        return value.bitLength() * Math.log10(2);
+    }
+
+    /**
+     * Fails before a power is computed whose result would have more digits than allowed.
+     */
+    static void powDigits(BigDecimal base, BigDecimal exp) {
+        Meter m = current.get();
+        if (Objects.isNull(m) || base.signum() == 0) return;
+        double digitsPerFactor = Math.log10(base.unscaledValue().abs().doubleValue());
+        m.digits((long) Math.min(Long.MAX_VALUE, Math.ceil(digitsPerFactor * exp.abs().doubleValue())));
+    }
+
+    /**
+     * Runs work on other threads against the budget of the thread that created it. Every thread counts into one
+     * shared total of steps and nodes that starts from what the parent had used, so the limits hold for the
+     * evaluation as a whole however it is split. Threads add to the total in batches of {@value #SHARED_BATCH},
+     * the parent takes the total over as each run completes. Without a running budget actions run unmetered, as
+     * they would on the parent thread.
+     */
+    static final class Share {
+        private final Meter parent;
+        private final AtomicLong steps;
+        private final AtomicLong nodes;
+
+        private Share(Meter parent) {
+            this.parent = parent;
+            this.steps = Objects.isNull(parent) ? null : new AtomicLong(parent.steps);
+            this.nodes = Objects.isNull(parent) ? null : new AtomicLong(parent.nodes);
+        }
+
+        <T> T run(Supplier<T> action) {
+            if (Objects.isNull(parent)) return action.get();
+
+            Meter previous = current.get();
+            SharedMeter meter = new SharedMeter(this);
+            current.set(meter);
+            try {
+                return action.get();
+            } finally {
+                meter.flush();
+                if (Objects.isNull(previous)) current.remove();
+                else current.set(previous);
+                parent.catchUp(steps.get(), nodes.get());
+            }
+        }
+    }
+
+    private static class Meter {
+        final Budget budget;
+        final long deadline;
+        long steps;
+        long nodes;
+
+        Meter(Budget budget) {
+            this(budget, Objects.isNull(budget.timeLimit) ? Long.MAX_VALUE : System.nanoTime() + budget.timeLimit.toNanos());
+        }
+
+        Meter(Budget budget, long deadline) {
+            this.budget = budget;
+            this.deadline = deadline;
+        }
+
+        /* Takes over the totals of work split off to other threads, which the parent waited for. */
+        synchronized void catchUp(long steps, long nodes) {
+            this.steps = Math.max(this.steps, steps);
+            this.nodes = Math.max(this.nodes, nodes);
+        }
+
+        void step() {
+            checkSteps(++steps);
+            if (steps % CLOCK_INTERVAL == 0) checkClock();
+        }
+
+        void nodes(long count) {
+            nodes += count;
+            checkNodes(nodes);
+        }
+
+        void digits(long digits) {
+            if (digits > budget.maxDigits)
+                throw new BudgetExceededException("Evaluation stopped: a number would have more than " + budget.maxDigits + " digits");
+        }
+
+        final void checkSteps(long steps) {
+            if (steps > budget.maxSteps)
+                throw new BudgetExceededException("Evaluation stopped: more than " + budget.maxSteps + " reduction steps");
+        }
+
+        final void checkNodes(long nodes) {
+            if (nodes > budget.maxNodes)
+                throw new BudgetExceededException("Evaluation stopped: more than " + budget.maxNodes + " nodes allocated");
+        }
+
+        final void checkClock() {
+            if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0)
+                throw new BudgetExceededException("Evaluation stopped: took longer than " + budget.timeLimit.toMillis() + " ms");
+        }
+    }
+
+    /**
+     * The meter of one thread running part of a {@link Share}. It counts locally and adds to the shared totals
+     * every {@value #SHARED_BATCH} steps or nodes.
+     */
+    private static final class SharedMeter extends Meter {
+        private final Share share;
+
+        SharedMeter(Share share) {
+            super(share.parent.budget, share.parent.deadline);
+            this.share = share;
+        }
+
+        @Override
+        void step() {
+            if (++steps < SHARED_BATCH) return;
+            checkSteps(share.steps.addAndGet(steps));
+            steps = 0;
+            checkClock();
+        }
+
+        @Override
+        void nodes(long count) {
+            nodes += count;
+            if (nodes < SHARED_BATCH) return;
+            checkNodes(share.nodes.addAndGet(nodes));
+            nodes = 0;
+        }
+
+        void flush() {
+            share.steps.addAndGet(steps);
+            share.nodes.addAndGet(nodes);
+            steps = 0;
+            nodes = 0;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package edu.cs340.interpreter;
+
+/**
+ * Thrown when an evaluation uses up one of the limits of its {@link Budget}.
+ */
+public class BudgetExceededException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    public BudgetExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,191 @@
+package edu.cs340.interpreter;
+
+import edu.cs340.number.Num;
+import edu.cs340.parser.ASTNode;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static edu.cs340.parser.Parser.ls;
+
+/**
+ * Aggregates over integer ranges that run natively instead of through recursive prelude functions:
+ * sum(f)(a)(b) and product(f)(a)(b) combine f(i) for every integer a <= i <= b, fold(g)(init)(a)(b) computes
+ * g(...g(g(init)(a))(a + 1)...)(b).
+ *
+ * Each is registered as a curried function whose innermost body is a BUILTIN node, so partial application, the
+ * prelude snapshot and printing need nothing special. Large sum and product ranges are split across the common
+ * fork/join pool; + and * are associative on the exact numbers, so the result does not depend on the split.
+ * fold applies an arbitrary g and always runs left to right. Terms that don't reduce to a number are kept as a
+ * residual sum or product, which is normalized like any other result.
+ */
+final class Builtins {
+
+    /* Ranges are only split into pieces of at least this many terms, shorter ones run on the calling thread. */
+    private static final long GRAIN = 1024;
+
+    private Builtins() {
+    }
+
+    static void register(Environment env) {
+        env.put("sum", curried("sum", "f", "a", "b"));
+        env.put("product", curried("product", "f", "a", "b"));
+        env.put("fold", curried("fold", "g", "init", "a", "b"));
+    }
+
+    private static ASTNode curried(String name, String... params) {
+        List<ASTNode> args = new LinkedList<>();
+        for (String p : params) args.add(new ASTNode(ASTNode.Type.ID, p + "*" + name));
+
+        ASTNode body = new ASTNode(ASTNode.Type.BUILTIN, name, args);
+        for (int i = params.length - 1; i >= 0; i--) {
+            ASTNode param = new ASTNode(ASTNode.Type.ID, params[i] + "*" + name);
+            body = new ASTNode(ASTNode.Type.FUNC_DEF, ls(new ASTNode(ASTNode.Type.PARAM_LIST, ls(param)), body));
+        }
+        return body;
+    }
+
+    /**
+     * Evaluates a BUILTIN node once all of its arguments are known, and returns it unchanged otherwise.
+     */
+    static ASTNode apply(ASTNode node) {
+        String name = (String) node.val();
+        List<ASTNode> args = node.children();
+        for (int i = 0; i < args.size(); i++) args.set(i, reduce(args.get(i)));
+
+        ASTNode fn = args.get(0);
+        ASTNode from = args.get(args.size() - 2);
+        ASTNode to = args.get(args.size() - 1);
+        if (fn.type() != ASTNode.Type.FUNC_DEF || from.type() != ASTNode.Type.NUM || to.type() != ASTNode.Type.NUM)
+            return node;
+
+        long a = bound(name, from);
+        long b = bound(name, to);
+        switch (name) {
+            case "sum":
+                return Interpreter.normalize(total(fn, ASTNode.Type.PLUS, a, b));
+            case "product":
+                return Interpreter.normalize(total(fn, ASTNode.Type.MULT, a, b));
+            case "fold":
+                return Interpreter.normalize(fold(fn, args.get(1), a, b));
+            default:
+                throw new IllegalStateException("Unknown builtin: " + name);
+        }
+    }
+
+    private static long bound(String name, ASTNode node) {
+        Num n = Num.of(node.val());
+        if (!n.isInteger()) throw new IllegalStateException(name + " expects integer bounds, got " + n);
+        if (n.numerator().bitLength() >= Long.SIZE) throw new IllegalStateException("Range bound too large: " + n);
+        return n.numerator().longValue();
+    }
+
+    private static ASTNode total(ASTNode fn, ASTNode.Type op, long a, long b) {
+        if (b - a + 1 < 2 * GRAIN) return range(fn, op, a, b);
+        return ForkJoinPool.commonPool().invoke(new Range(fn, op, a, b, Interpreter.environment(), Budget.share()));
+    }
+
+    /**
+     * Combines f(a) .. f(b) on the current thread, numbers straight away and anything else as a residual tree.
+     */
+    private static ASTNode range(ASTNode fn, ASTNode.Type op, long a, long b) {
+        Num acc = op == ASTNode.Type.PLUS ? Num.ZERO : Num.ONE;
+        ASTNode rest = null;
+        for (long i = a; i <= b; i++) {
+            ASTNode term = call(fn, number(Num.of(i)));
+            if (term.type() == ASTNode.Type.NUM) {
+                acc = combine(op, acc, Num.of(term.val()));
+            } else {
+                rest = Objects.isNull(rest) ? term : node(op, rest, term);
+            }
+        }
+        return Objects.isNull(rest) ? number(acc) : node(op, number(acc), rest);
+    }
+
+    private static ASTNode fold(ASTNode g, ASTNode init, long a, long b) {
+        ASTNode acc = init;
+        for (long i = a; i <= b; i++) {
+            ASTNode partial = new ASTNode(ASTNode.Type.APPLICATION, ls(g, new ASTNode(ASTNode.Type.PARAM_LIST, ls(acc))));
+            acc = call(partial, number(Num.of(i)));
+        }
+        return acc;
+    }
+
+    private static ASTNode call(ASTNode fn, ASTNode arg) {
+        return reduce(new ASTNode(ASTNode.Type.APPLICATION, ls(fn, new ASTNode(ASTNode.Type.PARAM_LIST, ls(arg)))));
+    }
+
+    /**
+     * Evaluates until nothing changes any more, the same way a line typed at the console is.
+     */
+    private static ASTNode reduce(ASTNode node) {
+        ASTNode res = Interpreter.eval(node);
+        ASTNode old;
+        do {
+            old = res;
+            res = Interpreter.eval(res);
+        } while (res != old);
+        return res;
+    }
+
+    private static ASTNode merge(ASTNode.Type op, ASTNode l, ASTNode r) {
+        if (l.type() == ASTNode.Type.NUM && r.type() == ASTNode.Type.NUM)
+            return number(combine(op, Num.of(l.val()), Num.of(r.val())));
+        return node(op, l, r);
+    }
+
+    private static Num combine(ASTNode.Type op, Num l, Num r) {
+        Num res = op == ASTNode.Type.PLUS ? l.add(r) : l.multiply(r);
+        Budget.digits(res);
+        return res;
+    }
+
+    private static ASTNode number(Num value) {
+        return new ASTNode(ASTNode.Type.NUM, value);
+    }
+
+    private static ASTNode node(ASTNode.Type op, ASTNode l, ASTNode r) {
+        Budget.nodes(1);
+        return new ASTNode(op, op == ASTNode.Type.PLUS ? "+" : "*", ls(l, r));
+    }
+
+    /**
+     * Half of a range per subtask until a piece is small enough to run through {@link #range}. Every piece runs
+     * with the environment and budget of the thread that started the aggregate, on its own copy of fn since
+     * evaluation reduces residual terms in place.
+     */
+    @SuppressWarnings("serial") // Tasks are never serialized, and the nodes they hold can't be.
+    private static final class Range extends RecursiveTask<ASTNode> {
+        private final ASTNode fn;
+        private final ASTNode.Type op;
+        private final long a;
+        private final long b;
+        private final Environment env;
+        private final Budget.Share budget;
+
+        Range(ASTNode fn, ASTNode.Type op, long a, long b, Environment env, Budget.Share budget) {
+            this.fn = fn;
+            this.op = op;
+            this.a = a;
+            this.b = b;
+            this.env = env;
+            this.budget = budget;
+        }
+
+        @Override
+        protected ASTNode compute() {
+            if (b - a + 1 < 2 * GRAIN)
+                return budget.run(() -> Interpreter.withEnvironment(env, () -> range(Interpreter.copy(fn), op, a, b)));
+
+            long mid = a + (b - a) / 2;
+            Range left = new Range(fn, op, a, mid, env, budget);
+            left.fork();
+            ASTNode right = new Range(fn, op, mid + 1, b, env, budget).compute();
+            ASTNode l = left.join();
+            return budget.run(() -> merge(op, l, right));
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package edu.cs340.interpreter;
+
+import edu.cs340.number.Num;
+import edu.cs340.parser.ASTNode;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * An expression parsed once, with named free variables, for evaluating many times from Java.
+ *
+ * Instances are immutable and can be shared between threads. Every evaluation works on its own copy of the parsed
+ * tree with the variable values put in directly, against the definitions captured when it was compiled, so
+ * nothing is parsed or printed per call and concurrent calls don't see each other. Those definitions are a
+ * read-only snapshot taken once, shared by every calling thread and looked up without locking. Definitions can't
+ * be compiled, so an evaluation never binds a name and needs nothing of its own beyond the bound tree.
+ *
+ * <pre>
+ * CompiledExpression hyp = Interpreter.compile("sqrt(a ^ 2 + b ^ 2)", "a", "b");
+ * double c = hyp.evaluateDouble(3, 4);
+ * </pre>
+ */
+public final class CompiledExpression {
+
+    private final String source;
+    private final ASTNode template;
+    private final List<String> variables;
+    private final Map<String, Integer> slots;
+    private final Environment env;
+    private final Budget budget;
+
+    /**
+     * @param env read-only definitions, see {@link Environment#frozen()}
+     */
+    CompiledExpression(String source, ASTNode template, List<String> variables, Environment env, Budget budget) {
+        if (template.type() == ASTNode.Type.ASSIGN)
+            throw new IllegalArgumentException("Definitions cannot be compiled, register them with let first: " + source);
+
+        this.source = source;
+        this.template = template;
+        this.variables = List.copyOf(variables);
+        this.slots = new HashMap<>();
+        for (int i = 0; i < this.variables.size(); i++) {
+            if (Objects.nonNull(slots.put(this.variables.get(i), i)))
+                throw new IllegalArgumentException("Variable declared twice: " + this.variables.get(i));
+        }
+        this.env = env;
+        this.budget = budget;
+    }
+
+    /**
+     * The free variables, in the order the positional evaluate methods take their values.
+     */
+    public List<String> variables() {
+        return variables;
+    }
+
+    public String source() {
+        return source;
+    }
+
+    /**
+     * The exact value for the given variable values, one per {@link #variables()} entry.
+     *
+     * @throws IllegalStateException when the expression doesn't reduce to a number
+     */
+    public Num evaluate(Num... values) {
+        if (values.length != variables.size())
+            throw new IllegalArgumentException("Expected " + variables.size() + " values for " + variables + ", got " + values.length);
+
+        ASTNode[] bound = new ASTNode[values.length];
+        for (int i = 0; i < values.length; i++) bound[i] = new ASTNode(ASTNode.Type.NUM, Objects.requireNonNull(values[i], variables.get(i)));
+        return run(bound);
+    }
+
+    /**
+     * Same as {@link #evaluate(Num...)} with values given by name, as Num, BigDecimal or any other Number.
+     */
+    public Num evaluate(Map<String, ?> bindings) {
+        Num[] values = new Num[variables.size()];
+        for (int i = 0; i < values.length; i++) {
+            Object value = bindings.get(variables.get(i));
+            if (Objects.isNull(value)) throw new IllegalArgumentException("No value bound to " + variables.get(i));
+            values[i] = toNum(value);
+        }
+        return evaluate(values);
+    }
+
+    public BigDecimal evaluateDecimal(BigDecimal... values) {
+        Num[] nums = new Num[values.length];
+        for (int i = 0; i < values.length; i++) nums[i] = Num.of(values[i]);
+        return evaluate(nums).toBigDecimal();
+    }
+
+    public double evaluateDouble(double... values) {
+        Num[] nums = new Num[values.length];
+        for (int i = 0; i < values.length; i++) nums[i] = Num.of(BigDecimal.valueOf(values[i]));
+        return evaluate(nums).toBigDecimal().doubleValue();
+    }
+
+    public long evaluateLong(long... values) {
+        Num[] nums = new Num[values.length];
+        for (int i = 0; i < values.length; i++) nums[i] = Num.of(values[i]);
+        Num res = evaluate(nums);
+        if (res.isInteger()) return res.numerator().longValueExact();
+
+        // Comparisons and roots give decimals such as 1.0000 even for whole results.
+        BigDecimal dec = res.toBigDecimal();
+        if (!res.isExact() && dec.stripTrailingZeros().scale() <= 0) return dec.longValueExact();
+        throw new ArithmeticException("Not an integer: " + res);
+    }
+
+    private static Num toNum(Object value) {
+        if (value instanceof Num) return (Num) value;
+        if (value instanceof BigDecimal) return Num.of((BigDecimal) value);
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+            return Num.of(((Number) value).longValue());
+        if (value instanceof Number) return Num.of(new BigDecimal(value.toString()));
+        throw new IllegalArgumentException("Not a number: " + value);
+    }
+
+    private Num run(ASTNode[] values) {
+        ASTNode res = Interpreter.withEnvironment(env, () -> Interpreter.withBudget(budget, () -> reduce(bind(template, values))));
+        if (res.type() != ASTNode.Type.NUM)
+            throw new IllegalStateException("Expression did not reduce to a number: " + res.consolePrint());
+        return Num.of(res.val());
+    }
+
+    /**
+     * Copies the template, which evaluation must never touch, with the variables replaced by their values.
+     */
+    private ASTNode bind(ASTNode src, ASTNode[] values) {
+        if (src.type() == ASTNode.Type.ID) {
+            Integer slot = slots.get((String) src.val());
+            if (Objects.nonNull(slot)) return values[slot];
+        }
+
+        List<ASTNode> children = null;
+        if (Objects.nonNull(src.children())) {
+            children = new LinkedList<>();
+            for (ASTNode child : src.children()) children.add(bind(child, values));
+        }
+        ASTNode res = new ASTNode(src.type(), src.val(), children);
+        if (src.isFinal()) res.markFinal();
+        return res;
+    }
+
+    private static ASTNode reduce(ASTNode node) {
+        ASTNode res = Interpreter.eval(node);
+        ASTNode old;
+        do {
+            old = res;
+            res = Interpreter.eval(res);
+        } while (res != old);
+        return Interpreter.normalize(res);
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledExpression(" + source + ", variables=" + variables + ")";
+    }
+}
@@ -0,0 +1,380 @@
+package edu.cs340.interpreter;
+
+import edu.cs340.parser.ASTNode;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * The variables known to one interpreter session.
+ *
+ * Besides plain bindings, an environment can hold pending bindings whose value is only produced the first time
+ * the name is looked up, so large environments can be restored without building every value up front.
+ *
+ * It also records which names every definition mentions. Value bindings keep the expression they were computed
+ * from, so when a name is redefined the bindings downstream of it can be recomputed.
+ */
+public class Environment {
+
+    private final Hashtable<String, ASTNode> vars = new Hashtable<>();
+    private final Hashtable<String, Supplier<ASTNode>> pending = new Hashtable<>();
+
+    private final Hashtable<String, ASTNode> sources = new Hashtable<>();
+    private final Hashtable<String, Set<String>> references = new Hashtable<>();
+    private final Hashtable<String, Set<String>> referencedBy = new Hashtable<>();
+
+    private final Tiers tiers = new Tiers();
+
+    public Environment() {
+    }
+
+    private Environment(Environment other) {
+        putAll(other);
+    }
+
+    /**
+     * The value of name, producing it first when the binding is pending. The value is produced outside the lock,
+     * it may evaluate user code that looks names up on other threads, and the binding stays pending if that fails.
+     * Pending bindings it is computed from are produced before it, in dependency order, so a long chain of
+     * recomputed values is worked off in a loop rather than by nested lookups.
+     */
+    public ASTNode get(String name) {
+        synchronized (this) {
+            ASTNode value = vars.get(name);
+            if (Objects.nonNull(value) || !pending.containsKey(name)) return value;
+        }
+        for (String dependency : pendingDependencies(name)) produce(dependency);
+        return produce(name);
+    }
+
+    private ASTNode produce(String name) {
+        Supplier<ASTNode> lazy;
+        synchronized (this) {
+            ASTNode value = vars.get(name);
+            if (Objects.nonNull(value)) return value;
+
+            lazy = pending.get(name);
+            if (Objects.isNull(lazy)) return null;
+        }
+
+        ASTNode value = lazy.get();
+        synchronized (this) {
+            if (pending.get(name) == lazy) {
+                pending.remove(name);
+                vars.put(name, value);
+                if (!references.containsKey(name)) link(name, value);
+                return value;
+            }
+        }
+        // Rebound or produced by another thread meanwhile.
+        return get(name);
+    }
+
+    /* The pending bindings name is computed from, directly or not, each after the ones it is computed from. */
+    private synchronized List<String> pendingDependencies(String name) {
+        List<String> order = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        seen.add(name);
+        Deque<Iterator<String>> path = new ArrayDeque<>();
+        Deque<String> names = new ArrayDeque<>();
+        path.push(references.getOrDefault(name, Collections.emptySet()).iterator());
+        names.push(name);
+        while (!path.isEmpty()) {
+            Iterator<String> refs = path.peek();
+            if (refs.hasNext()) {
+                String ref = refs.next();
+                if (pending.containsKey(ref) && seen.add(ref)) {
+                    path.push(references.getOrDefault(ref, Collections.emptySet()).iterator());
+                    names.push(ref);
+                }
+                continue;
+            }
+            path.pop();
+            String done = names.pop();
+            if (!done.equals(name)) order.add(done);
+        }
+        return order;
+    }
+
+    public synchronized boolean containsKey(String name) {
+        return vars.containsKey(name) || pending.containsKey(name);
+    }
+
+    public synchronized void put(String name, ASTNode value) {
+        pending.remove(name);
+        vars.put(name, value);
+        sources.remove(name);
+        link(name, value);
+        changed(name);
+    }
+
+    /**
+     * Binds name to a value computed from source, which is kept so the value can be recomputed later.
+     */
+    public synchronized void define(String name, ASTNode value, ASTNode source) {
+        pending.remove(name);
+        vars.put(name, value);
+        sources.put(name, source);
+        link(name, source);
+        changed(name);
+    }
+
+    /**
+     * Binds name to a value that is still to be computed from source, as after {@link #define} and
+     * {@link #invalidate}.
+     */
+    public synchronized void definePending(String name, ASTNode source, Supplier<ASTNode> value) {
+        vars.remove(name);
+        pending.put(name, value);
+        sources.put(name, source);
+        link(name, source);
+        changed(name);
+    }
+
+    public synchronized void putLazy(String name, Supplier<ASTNode> value) {
+        vars.remove(name);
+        pending.put(name, value);
+        sources.remove(name);
+        unlink(name);
+        changed(name);
+    }
+
+    /**
+     * Replaces the value of name with one produced on the next lookup, keeping its source and references.
+     */
+    public synchronized void invalidate(String name, Supplier<ASTNode> value) {
+        vars.remove(name);
+        pending.put(name, value);
+        changed(name);
+    }
+
+    /**
+     * Drops the binding of name and returns its value, or null when it was still pending.
+     */
+    public synchronized ASTNode remove(String name) {
+        ASTNode value = vars.remove(name);
+        pending.remove(name);
+        changed(name);
+        sources.remove(name);
+        unlink(name);
+        return value;
+    }
+
+    public synchronized void clear() {
+        vars.clear();
+        pending.clear();
+        sources.clear();
+        references.clear();
+        referencedBy.clear();
+        tiers.clear();
+    }
+
+    /**
+     * Adds every binding of other, replacing those of the same names here together with what they referenced.
+     */
+    public synchronized void putAll(Environment other) {
+        synchronized (other) {
+            for (String name : other.names()) {
+                vars.remove(name);
+                pending.remove(name);
+                sources.remove(name);
+                unlink(name);
+                changed(name);
+            }
+            vars.putAll(other.vars);
+            pending.putAll(other.pending);
+            sources.putAll(other.sources);
+            other.references.forEach((name, refs) -> {
+                references.put(name, new HashSet<>(refs));
+                for (String ref : refs) referencedBy.computeIfAbsent(ref, r -> new HashSet<>()).add(name);
+            });
+        }
+    }
+
+    /**
+     * The expression a value binding was computed from, or null for functions and restored values.
+     */
+    public synchronized ASTNode source(String name) {
+        return sources.get(name);
+    }
+
+    /**
+     * Every binding whose definition mentions name, directly or through other bindings, nearest first.
+     */
+    public synchronized Set<String> dependents(String name) {
+        Set<String> res = new LinkedHashSet<>();
+        Deque<String> work = new ArrayDeque<>();
+        work.add(name);
+        while (!work.isEmpty()) {
+            for (String d : referencedBy.getOrDefault(work.poll(), Collections.emptySet())) {
+                if (!d.equals(name) && res.add(d)) work.add(d);
+            }
+        }
+        return res;
+    }
+
+    Tiers tiers() {
+        return tiers;
+    }
+
+    /* Optimized code may have resolved name, directly or through the functions it calls. */
+    private void changed(String name) {
+        tiers.deoptimize(name);
+        for (String dependent : dependents(name)) tiers.deoptimize(dependent);
+    }
+
+    private void link(String name, ASTNode definition) {
+        unlink(name);
+        Set<String> refs = new HashSet<>();
+        collectNames(definition, refs);
+        references.put(name, refs);
+        for (String ref : refs) referencedBy.computeIfAbsent(ref, r -> new HashSet<>()).add(name);
+    }
+
+    private void unlink(String name) {
+        Set<String> refs = references.remove(name);
+        if (Objects.isNull(refs)) return;
+        for (String ref : refs) {
+            Set<String> users = referencedBy.get(ref);
+            if (Objects.isNull(users)) continue;
+            users.remove(name);
+            if (users.isEmpty()) referencedBy.remove(ref);
+        }
+    }
+
+    /* Parameters are renamed to name*uuid by the parser and can never refer to a binding. */
+    static void collectNames(ASTNode node, Set<String> names) {
+        if (node.type() == ASTNode.Type.ID && ((String) node.val()).indexOf('*') < 0) names.add((String) node.val());
+        if (Objects.nonNull(node.children())) {
+            for (ASTNode child : node.children()) collectNames(child, names);
+        }
+    }
+
+    public synchronized Set<String> names() {
+        Set<String> names = new TreeSet<>(vars.keySet());
+        names.addAll(pending.keySet());
+        return names;
+    }
+
+    public synchronized int size() {
+        return vars.size() + pending.size();
+    }
+
+    /**
+     * Visits every binding in name order without evaluating anything: a value waiting to be recomputed is visited
+     * as the expression it is computed from. Restored bindings are decoded on the way.
+     */
+    public void forEach(BiConsumer<String, ASTNode> action) {
+        for (String name : names()) {
+            ASTNode value = peek(name);
+            if (Objects.nonNull(value)) action.accept(name, value);
+        }
+    }
+
+    private ASTNode peek(String name) {
+        synchronized (this) {
+            ASTNode value = vars.get(name);
+            if (Objects.nonNull(value)) return value;
+
+            ASTNode source = sources.get(name);
+            if (pending.containsKey(name) && Objects.nonNull(source)) return source;
+        }
+        return get(name);
+    }
+
+    public synchronized Environment copy() {
+        return new Environment(this);
+    }
+
+    /**
+     * A copy of the bindings as they are now that can't be changed, to share between threads.
+     */
+    synchronized Environment frozen() {
+        return new Frozen(this);
+    }
+
+    /**
+     * Read-only bindings whose lookups take no lock, so any number of threads can evaluate against them at once.
+     * A pending binding is still produced by its first lookup, under the lock, and read from the map after that.
+     */
+    private static final class Frozen extends Environment {
+        private final Set<String> known;
+        private final Map<String, ASTNode> values = new ConcurrentHashMap<>();
+
+        Frozen(Environment other) {
+            super.putAll(other);
+            known = Set.copyOf(super.names());
+        }
+
+        @Override
+        public ASTNode get(String name) {
+            ASTNode value = values.get(name);
+            if (Objects.nonNull(value) || !known.contains(name)) return value;
+
+            value = super.get(name);
+            if (Objects.nonNull(value)) values.put(name, value);
+            return value;
+        }
+
+        @Override
+        public boolean containsKey(String name) {
+            return known.contains(name);
+        }
+
+        @Override
+        public Set<String> names() {
+            return new TreeSet<>(known);
+        }
+
+        @Override
+        public int size() {
+            return known.size();
+        }
+
+        @Override
+        public void put(String name, ASTNode value) {
+            throw readOnly(name);
+        }
+
+        @Override
+        public void define(String name, ASTNode value, ASTNode source) {
+            throw readOnly(name);
+        }
+
+        @Override
+        public void definePending(String name, ASTNode source, Supplier<ASTNode> value) {
+            throw readOnly(name);
+        }
+
+        @Override
+        public void putLazy(String name, Supplier<ASTNode> value) {
+            throw readOnly(name);
+        }
+
+        @Override
+        public void invalidate(String name, Supplier<ASTNode> value) {
+            throw readOnly(name);
+        }
+
+        @Override
+        public ASTNode remove(String name) {
+            throw readOnly(name);
+        }
+
+        @Override
+        public void clear() {
+            throw new IllegalStateException("These definitions are read-only");
+        }
+
+        @Override
+        public void putAll(Environment other) {
+            throw new IllegalStateException("These definitions are read-only");
+        }
+
+        private static IllegalStateException readOnly(String name) {
+            return new IllegalStateException("Cannot change " + name + ", these definitions are read-only");
+        }
+    }
+}
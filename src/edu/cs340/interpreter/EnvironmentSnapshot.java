@@ -0,0 +1,267 @@
+package edu.cs340.interpreter;
+
+import edu.cs340.number.Num;
+import edu.cs340.parser.ASTNode;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Binary snapshot of named definitions.
+ *
+ * Layout: the magic number and version, the number of definitions, an index of (name, kind, offset, length) entries
+ * and finally the encoded trees. The kind tells a value from the source of a computed value, which is restored as
+ * a binding recomputed on its first lookup; version 1 files have no kind and hold values only. Each node is written in pre-order as its type (with the high bit set for final
+ * nodes), its value and its child count, followed by its children. Reading maps the file and only reads the index;
+ * a tree is decoded from the mapped bytes the first time its name is looked up.
+ */
+class EnvironmentSnapshot {
+
+    private static final int MAGIC = 0x43414C43; // "CALC"
+    private static final int VERSION = 2;
+
+    private static final byte VALUE_ENTRY = 0;
+    private static final byte SOURCE_ENTRY = 1;
+
+    private static final byte NO_VALUE = 0;
+    private static final byte STRING_VALUE = 1;
+    private static final byte NUMBER_VALUE = 2;
+    private static final byte RATIONAL_VALUE = 3;
+    private static final byte INEXACT_VALUE = 4;
+
+    private static final byte FINAL_FLAG = (byte) 0x80;
+    private static final ASTNode.Type[] types = ASTNode.Type.values();
+
+    private EnvironmentSnapshot() {
+    }
+
+    static void write(Path file, Map<String, ASTNode> definitions) throws IOException {
+        write(file, definitions, Collections.emptySet());
+    }
+
+    /**
+     * @param computed names whose definition is the source of a computed value rather than the value itself
+     */
+    static void write(Path file, Map<String, ASTNode> definitions, Set<String> computed) throws IOException {
+        ByteArrayOutputStream trees = new ByteArrayOutputStream();
+        DataOutputStream treeOut = new DataOutputStream(trees);
+
+        List<String> names = new ArrayList<>(definitions.keySet());
+        int[] offsets = new int[names.size()];
+        int[] lengths = new int[names.size()];
+        for (int i = 0; i < names.size(); i++) {
+            offsets[i] = treeOut.size();
+            writeNode(definitions.get(names.get(i)), treeOut);
+            lengths[i] = treeOut.size() - offsets[i];
+        }
+
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        DataOutputStream indexOut = new DataOutputStream(index);
+        for (int i = 0; i < names.size(); i++) {
+            indexOut.writeUTF(names.get(i));
+            indexOut.writeByte(computed.contains(names.get(i)) ? SOURCE_ENTRY : VALUE_ENTRY);
+            indexOut.writeInt(offsets[i]);
+            indexOut.writeInt(lengths[i]);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(names.size());
+            out.writeInt(index.size());
+            index.writeTo(out);
+            trees.writeTo(out);
+        }
+    }
+
+    /**
+     * Registers every definition of the snapshot in env as a pending binding and returns how many there were.
+     */
+    static int read(Path file, Environment env) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return read(mapped, file.toString(), env);
+    }
+
+    /**
+     * Same as {@link #read(Path, Environment)} for a snapshot that is already in memory, e.g. a class path resource.
+     * Every tree is decoded at most once, even when env is copied before the name is looked up.
+     */
+    static int read(ByteBuffer mapped, String file, Environment env) throws IOException {
+        try {
+            if (mapped.getInt() != MAGIC) throw new IllegalArgumentException("Not a calculator snapshot: " + file);
+            int version = mapped.getInt();
+            if (version != 1 && version != VERSION) throw new IllegalArgumentException("Unsupported snapshot version: " + version);
+
+            int count = mapped.getInt();
+            int indexLength = mapped.getInt();
+            int treesStart = mapped.position() + indexLength;
+
+            DataInputStream index = new DataInputStream(new ByteBufferInputStream(mapped.slice().limit(indexLength)));
+            for (int i = 0; i < count; i++) {
+                String name = index.readUTF();
+                byte kind = version == 1 ? VALUE_ENTRY : index.readByte();
+                int offset = index.readInt();
+                int length = index.readInt();
+                ByteBuffer tree = mapped.duplicate().position(treesStart + offset).limit(treesStart + offset + length).slice();
+                if (kind == SOURCE_ENTRY) {
+                    // Decoded right away, the names it mentions are needed to track what it depends on.
+                    ASTNode source = readNode(tree);
+                    env.definePending(name, source, Interpreter.recomputation(env, source));
+                } else {
+                    env.putLazy(name, new Lazy(tree));
+                }
+            }
+            return count;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | EOFException ex) {
+            throw new IllegalArgumentException("Corrupt calculator snapshot: " + file);
+        }
+    }
+
+    private static void writeNode(ASTNode node, DataOutputStream out) throws IOException {
+        byte type = (byte) node.type().ordinal();
+        if (node.isFinal()) type |= FINAL_FLAG;
+        out.writeByte(type);
+
+        Object val = node.val();
+        if (Objects.isNull(val)) {
+            out.writeByte(NO_VALUE);
+        } else if (val instanceof BigDecimal) {
+            out.writeByte(NUMBER_VALUE);
+            writeDecimal((BigDecimal) val, out);
+        } else if (val instanceof Num && ((Num) val).isExact()) {
+            out.writeByte(RATIONAL_VALUE);
+            writeInteger(((Num) val).numerator(), out);
+            writeInteger(((Num) val).denominator(), out);
+        } else if (val instanceof Num) {
+            out.writeByte(INEXACT_VALUE);
+            writeDecimal(((Num) val).toBigDecimal(), out);
+        } else {
+            byte[] utf = String.valueOf(val).getBytes(StandardCharsets.UTF_8);
+            out.writeByte(STRING_VALUE);
+            out.writeShort(utf.length);
+            out.write(utf);
+        }
+
+        List<ASTNode> children = node.children();
+        if (Objects.isNull(children)) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(children.size());
+        for (ASTNode child : children) writeNode(child, out);
+    }
+
+    private static void writeDecimal(BigDecimal num, DataOutputStream out) throws IOException {
+        out.writeInt(num.scale());
+        writeInteger(num.unscaledValue(), out);
+    }
+
+    private static void writeInteger(BigInteger num, DataOutputStream out) throws IOException {
+        byte[] bytes = num.toByteArray();
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer in) {
+        int scale = in.getInt();
+        return new BigDecimal(readInteger(in), scale);
+    }
+
+    private static BigInteger readInteger(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new BigInteger(bytes);
+    }
+
+    private static ASTNode readNode(ByteBuffer in) {
+        byte type = in.get();
+        boolean isFinal = (type & FINAL_FLAG) != 0;
+        ASTNode.Type t = types[type & ~FINAL_FLAG];
+
+        Object val;
+        switch (in.get()) {
+            case NUMBER_VALUE:
+                val = readDecimal(in);
+                break;
+            case RATIONAL_VALUE:
+                val = Num.rational(readInteger(in), readInteger(in));
+                break;
+            case INEXACT_VALUE:
+                val = Num.decimal(readDecimal(in));
+                break;
+            case STRING_VALUE: {
+                byte[] utf = new byte[in.getShort() & 0xFFFF];
+                in.get(utf);
+                val = new String(utf, StandardCharsets.UTF_8);
+                break;
+            }
+            default:
+                val = null;
+        }
+
+        int childCount = in.getInt();
+        List<ASTNode> children = null;
+        if (childCount >= 0) {
+            children = new LinkedList<>();
+            for (int i = 0; i < childCount; i++) children.add(readNode(in));
+        }
+
+        ASTNode node = new ASTNode(t, val, children);
+        if (isFinal) node.markFinal();
+        return node;
+    }
+
+    private static class Lazy implements Supplier<ASTNode> {
+        private final ByteBuffer tree;
+        private volatile ASTNode value;
+
+        Lazy(ByteBuffer tree) {
+            this.tree = tree;
+        }
+
+        @Override
+        public ASTNode get() {
+            if (Objects.isNull(value)) {
+                synchronized (this) {
+                    if (Objects.isNull(value)) value = readNode(tree.duplicate());
+                }
+            }
+            return value;
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) return -1;
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+    }
+}
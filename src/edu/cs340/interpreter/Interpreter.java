@@ -1,34 +1,129 @@
 package edu.cs340.interpreter;
 
+import edu.cs340.metrics.BodyCopyEvent;
+import edu.cs340.metrics.Metrics;
+import edu.cs340.metrics.NumericKernelEvent;
+import edu.cs340.metrics.Profiler;
+import edu.cs340.number.Num;
 import edu.cs340.parser.ASTNode;
 import edu.cs340.parser.Parser;
+import edu.cs340.parser.Printer;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Supplier;
 
 public class Interpreter {
 
-    private static Hashtable<String, ASTNode> vars = new Hashtable<>();
+    static final String PRELUDE_RESOURCE = "prelude.bin";
+
+    private static final Environment prelude = new Environment();
+    private static final ThreadLocal<Environment> vars = ThreadLocal.withInitial(Interpreter::newEnvironment);
 
     static {
-        loadDefaultFunctions();
+        if (!loadCompiledPrelude()) {
+            vars.set(prelude);
+            loadDefaultFunctions();
+            vars.remove();
+        }
     }
 
     private Interpreter() {
     }
 
+    /**
+     * Registers the default functions from the snapshot PreludeCompiler writes at build time.
+     * Each one is only decoded when it is first looked up. Returns false when the build did not produce it.
+     */
+    private static boolean loadCompiledPrelude() {
+        try (InputStream in = Interpreter.class.getResourceAsStream(PRELUDE_RESOURCE)) {
+            if (Objects.isNull(in)) return false;
+            EnvironmentSnapshot.read(ByteBuffer.wrap(in.readAllBytes()), PRELUDE_RESOURCE, prelude);
+            return true;
+        } catch (IOException | IllegalArgumentException ex) {
+            prelude.clear();
+            return false;
+        }
+    }
+
+    /**
+     * Creates a fresh variable environment holding only the default functions.
+     * Function definitions are never mutated by evaluation, so the prelude entries can be shared.
+     */
+    public static Environment newEnvironment() {
+        return prelude.copy();
+    }
+
+    /**
+     * Runs the given action with env as the variable environment of the current thread.
+     * The previous environment is restored afterwards.
+     */
+    public static <T> T withEnvironment(Environment env, Supplier<T> action) {
+        Environment previous = vars.get();
+        vars.set(env);
+        try {
+            return action.get();
+        } finally {
+            vars.set(previous);
+        }
+    }
+
+    static Environment environment() {
+        return vars.get();
+    }
+
+    /**
+     * Parses src once for evaluating it many times, see {@link CompiledExpression}. The definitions of the current
+     * environment are captured as they are now. Without declared variables, every name the environment doesn't
+     * define is one, in alphabetical order.
+     */
+    public static CompiledExpression compile(String src, String... variables) {
+        return compile(src, Budget.defaults(), variables);
+    }
+
+    public static CompiledExpression compile(String src, Budget budget, String... variables) {
+        ASTNode tree = Parser.parse(src);
+        Environment env = vars.get().frozen();
+
+        List<String> names = Arrays.asList(variables);
+        if (names.isEmpty()) {
+            Set<String> free = new TreeSet<>();
+            Environment.collectNames(tree, free);
+            free.removeIf(env::containsKey);
+            names = new ArrayList<>(free);
+        }
+        return new CompiledExpression(src, tree, names, env, budget);
+    }
+
     public static ASTNode eval(String src) {
         return eval(Parser.parse(src));
     }
 
+    /**
+     * Runs the given action under budget, so any evaluation it starts on this thread stops cleanly with a
+     * {@link BudgetExceededException} once a limit is crossed.
+     */
+    public static <T> T withBudget(Budget budget, Supplier<T> action) {
+        return budget.run(action);
+    }
+
     public static ASTNode eval(ASTNode node) {
+        Metrics.nodeEvaluated();
+        Budget.step();
         switch (node.type()) {
             case ASSIGN:
                 return register(node);
             case ID: {
+                if (node instanceof Resolved) return ((Resolved) node).target();
                 String name = (String) node.val();
-                if (vars.containsKey(name)) return vars.get(name);
+                ASTNode value = vars.get().get(name);
+                Metrics.varLookup(Objects.nonNull(value));
+                if (Objects.nonNull(value)) return value;
                 return node;
             }
             case NEGATION:
@@ -37,6 +132,8 @@ public class Interpreter {
                 return fact(node);
             case APPLICATION:
                 return evalApplication(node);
+            case BUILTIN:
+                return Builtins.apply(node);
             case MULT:
             case MOD:
             case FLOOR_DIV:
@@ -54,6 +151,7 @@ public class Interpreter {
         if (node.type() != ASTNode.Type.APPLICATION) return eval(node);
 
         ASTNode lhs = node.children().get(0);
+        String name = functionName(lhs);
 
         ASTNode rhs = node.children().get(1);
         if (rhs.type() != ASTNode.Type.PARAM_LIST) {
@@ -62,17 +160,52 @@ public class Interpreter {
         }
         if (rhs.type() != ASTNode.Type.PARAM_LIST) return node;
 
+        // Only a registered function is the same instance on every lookup, see Specializations.
+        boolean registered = lhs.type() == ASTNode.Type.ID && ((String) lhs.val()).indexOf('*') < 0;
         if (lhs.type() != ASTNode.Type.FUNC_DEF) {
-            lhs = eval(lhs);
+            ASTNode hot = tiered(lhs);
+            lhs = Objects.nonNull(hot) ? hot : eval(lhs);
             node.children().set(0, lhs);
         }
         if (lhs.type() != ASTNode.Type.FUNC_DEF) return node;
 
-        node = getVars(lhs, rhs);
+        Metrics.application();
+        Profiler.enter(name);
+        try {
+            if (registered && Specializations.applies(lhs, rhs)) {
+                ASTNode fn = lhs, args = rhs;
+                return Specializations.get(lhs, rhs, () -> getVars(fn, args));
+            }
+            node = getVars(lhs, rhs);
+            return eval(node);
+        } finally {
+            Profiler.exit();
+        }
+    }
 
-        if (lhs.type() != ASTNode.Type.FUNC_DEF) return node;
+    /**
+     * The name the applied function was registered under, e.g. lt for both stages of lt(x)(y).
+     */
+    private static String functionName(ASTNode fn) {
+        while (fn.type() == ASTNode.Type.APPLICATION) fn = fn.children().get(0);
+        if (fn.type() != ASTNode.Type.ID) return "<anonymous>";
+        String id = (String) fn.val();
+        int star = id.indexOf('*');
+        return star < 0 ? id : id.substring(0, star);
+    }
 
-        return eval(node);
+    /**
+     * Counts an application of a registered function and returns its optimized version once it is hot, see
+     * {@link Tiers}. Null for cold functions, parameters and anything else.
+     */
+    private static ASTNode tiered(ASTNode fn) {
+        if (fn.type() != ASTNode.Type.ID) return null;
+        String name = (String) fn.val();
+        if (name.indexOf('*') >= 0) return null;
+
+        ASTNode hot = vars.get().tiers().applied(name, vars.get());
+        if (Objects.nonNull(hot) || !(fn instanceof Resolved)) return hot;
+        return ((Resolved) fn).target();
     }
 
     private static ASTNode getVars(ASTNode lhs, ASTNode rhs) {
@@ -85,10 +218,29 @@ public class Interpreter {
         }
 
         ASTNode body = lhs.children().get(1);
-        return copyWithVars(body, actParams);
+        if (!Metrics.enabled()) return copyWithVars(body, actParams);
+
+        BodyCopyEvent event = new BodyCopyEvent();
+        if (event.isEnabled()) event.begin();
+        ASTNode copy = copyWithVars(body, actParams);
+        if (event.shouldCommit()) {
+            event.nodes = size(copy);
+            event.commit();
+        }
+        return copy;
+    }
+
+    private static int size(ASTNode node) {
+        int size = 1;
+        if (Objects.nonNull(node.children())) {
+            for (ASTNode child : node.children()) size += size(child);
+        }
+        return size;
     }
 
     private static ASTNode copyWithVars(ASTNode src, Hashtable<String, ASTNode> vars) {
+        if (src instanceof Resolved) return src;
+
         List<ASTNode> children = new LinkedList<>();
 
         if (Objects.nonNull(src.children())) {
@@ -103,6 +255,8 @@ public class Interpreter {
             }
         }
 
+        Metrics.nodeCopied(children.size());
+        Budget.nodes(1);
         return new ASTNode(src.type(), src.val(), children);
     }
 
@@ -110,16 +264,16 @@ public class Interpreter {
         ASTNode lhs = eval(node.children().get(0));
 
         if (node.type() == ASTNode.Type.MULT && lhs.type() == ASTNode.Type.NUM)
-            if (lhs.val().equals(BigDecimal.ZERO)) return lhs;
-            else if (lhs.val().equals(BigDecimal.ONE)) return eval(node.children().get(1));
+            if (Num.of(lhs.val()).isZero()) return lhs;
+            else if (Num.of(lhs.val()).isOne()) return eval(node.children().get(1));
 
         ASTNode rhs = eval(node.children().get(1));
 
         if (node.type() == ASTNode.Type.PLUS && lhs.type() == ASTNode.Type.NUM)
-            if (lhs.val().equals(BigDecimal.ZERO)) return rhs;
+            if (Num.of(lhs.val()).isZero()) return rhs;
 
         if (node.type() == ASTNode.Type.PLUS && rhs.type() == ASTNode.Type.NUM)
-            if (rhs.val().equals(BigDecimal.ZERO)) return lhs;
+            if (Num.of(rhs.val()).isZero()) return lhs;
 
 
         node.children().set(0, lhs);
@@ -127,36 +281,68 @@ public class Interpreter {
 
         if (Objects.isNull(lhs) || lhs.type() != ASTNode.Type.NUM || Objects.isNull(rhs) || rhs.type() != ASTNode.Type.NUM) return node;
 
-        BigDecimal l = (BigDecimal) lhs.val();
-        BigDecimal r = (BigDecimal) rhs.val();
+        Num l = Num.of(lhs.val());
+        Num r = Num.of(rhs.val());
 
-        switch (node.type()) {
+        if (!Metrics.detailed()) {
+            Num res = compute(node.type(), l, r);
+            Budget.digits(res);
+            Metrics.numericOp();
+            return new ASTNode(ASTNode.Type.NUM, res);
+        }
+
+        NumericKernelEvent event = new NumericKernelEvent();
+        if (event.isEnabled()) event.begin();
+        long start = System.nanoTime();
+        Num res = compute(node.type(), l, r);
+        Budget.digits(res);
+        Metrics.numericKernel(System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.operator = node.type().name();
+            event.commit();
+        }
+
+        return new ASTNode(ASTNode.Type.NUM, res);
+    }
+
+    /**
+     * Exact on rationals. Only fractional powers leave the rationals and go through BigDecimal.
+     */
+    private static Num compute(ASTNode.Type op, Num l, Num r) {
+        switch (op) {
             case PLUS:
-                return new ASTNode(ASTNode.Type.NUM, l.add(r));
+                return l.add(r);
             case MINUS:
-                return new ASTNode(ASTNode.Type.NUM, l.subtract(r));
+                return l.subtract(r);
             case MULT:
-                return new ASTNode(ASTNode.Type.NUM, l.multiply(r));
+                return l.multiply(r);
             case DIV:
-                return new ASTNode(ASTNode.Type.NUM, roundToPrecision(l.divide(r, 15, RoundingMode.HALF_UP), 15));
+                return l.divide(r);
             case FLOOR_DIV:
-                return new ASTNode(ASTNode.Type.NUM, l.divideToIntegralValue(r));
+                return l.divideToIntegralValue(r);
             case MOD:
-                return new ASTNode(ASTNode.Type.NUM, l.remainder(r));
+                return l.remainder(r);
             case POW: {
-                if (r.divideToIntegralValue(BigDecimal.ONE).compareTo(r) != 0)
-                    if (l.compareTo(BigDecimal.ZERO) < 0)
-                        throw new IllegalStateException("Negative numbers cannot be raised to a fractional exponent");
+                if (r.isInteger()) {
+                    if (r.numerator().bitLength() >= Integer.SIZE)
+                        throw new IllegalStateException("Exponent too large: " + r);
+                    Budget.powDigits(l, r);
+                    return l.pow(r.numerator().intValue());
+                }
+
+                if (l.signum() < 0)
+                    throw new IllegalStateException("Negative numbers cannot be raised to a fractional exponent");
 
-                if (r.compareTo(BigDecimal.ZERO) < 0) {
-                    r = r.negate();
-                    return new ASTNode(ASTNode.Type.NUM, roundToPrecision(BigDecimal.ONE.divide(fractionallyAccuratePow(l, r), 5, RoundingMode.HALF_UP), 10));
+                BigDecimal base = l.toBigDecimal();
+                BigDecimal exp = r.toBigDecimal();
+                if (exp.signum() < 0) {
+                    return Num.decimal(roundToPrecision(BigDecimal.ONE.divide(fractionallyAccuratePow(base, exp.negate()), Num.OUTPUT_SCALE, RoundingMode.HALF_UP), Num.OUTPUT_SCALE));
                 }
 
-                return new ASTNode(ASTNode.Type.NUM, roundToPrecision(fractionallyAccuratePow(l, r), 15));
+                return Num.decimal(roundToPrecision(fractionallyAccuratePow(base, exp), Num.OUTPUT_SCALE));
             }
             default:
-                return eval(node);
+                throw new IllegalStateException("Not a binary operator: " + op);
         }
     }
 
@@ -169,8 +355,23 @@ public class Interpreter {
             return node;
         }
 
-        BigDecimal r = (BigDecimal) res.val();
-        return new ASTNode(ASTNode.Type.NUM, fact(r));
+        Num r = Num.of(res.val());
+        if (!Metrics.detailed()) {
+            Metrics.numericOp();
+            return new ASTNode(ASTNode.Type.NUM, r.isExact() ? fact(r) : Num.decimal(fact(r.toBigDecimal())));
+        }
+
+        NumericKernelEvent event = new NumericKernelEvent();
+        if (event.isEnabled()) event.begin();
+        long start = System.nanoTime();
+        Num fact = r.isExact() ? fact(r) : Num.decimal(fact(r.toBigDecimal()));
+        Metrics.numericKernel(System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.operator = ASTNode.Type.FACT.name();
+            event.commit();
+        }
+
+        return new ASTNode(ASTNode.Type.NUM, fact);
     }
 
     private static ASTNode negate(ASTNode node) {
@@ -182,14 +383,30 @@ public class Interpreter {
             return node;
         }
 
-        BigDecimal r = (BigDecimal) res.val();
+        Num r = Num.of(res.val());
         return new ASTNode(ASTNode.Type.NUM, r.negate());
     }
 
+    /**
+     * Same walk towards zero as {@link #fact(BigDecimal)}, on exact rationals.
+     */
+    public static Num fact(Num n) {
+        Num ans = Num.ONE;
+        while (!n.isZero()) {
+            Budget.step();
+            ans = ans.multiply(n);
+            Budget.digits(ans);
+            n = n.signum() > 0 ? n.subtract(Num.ONE) : n.add(Num.ONE);
+        }
+        return ans;
+    }
+
     public static BigDecimal fact(BigDecimal bd) {
         BigDecimal ans = BigDecimal.ONE;
         while (!bd.equals(BigDecimal.ZERO)) {
+            Budget.step();
             ans = ans.multiply(bd);
+            Budget.digits(ans);
             bd = bd.compareTo(BigDecimal.ZERO) > 0 ? bd.subtract(BigDecimal.ONE) : bd.add(BigDecimal.ONE);
         }
         return ans;
@@ -209,8 +426,10 @@ public class Interpreter {
         BigDecimal ans = BigDecimal.ONE;
 
         BigDecimal whole = exp.divideToIntegralValue(BigDecimal.ONE);
+        Budget.powDigits(base, whole);
 
         while (whole.compareTo(BigDecimal.ZERO) > 0) {
+            Budget.step();
             ans = ans.multiply(base);
             whole = whole.subtract(BigDecimal.ONE);
         }
@@ -231,6 +450,7 @@ public class Interpreter {
         BigDecimal secondTerm;
         BigDecimal oldTermPowNMinusOne;
         while (delta.compareTo(margin) > 0) {
+            Budget.step();
             oldNthRoot = nthRoot;
 
             firstTerm = multiplier_a.multiply(nthRoot);
@@ -253,32 +473,123 @@ public class Interpreter {
 
     private static ASTNode register(ASTNode node) {
         String name = (String) node.val();
+        Environment env = vars.get();
+        ASTNode body = node.children().get(0);
 
-        if (node.children().get(0).type() == ASTNode.Type.FUNC_DEF) {
-            vars.put(name, node.children().get(0));
-        } else {
-            ASTNode res = eval(node.children().get(0));
-            if (Objects.nonNull(res)) {
-                vars.put(name, res);
-                return res;
-            }
+        if (body.type() == ASTNode.Type.FUNC_DEF) {
+            env.put(name, body);
+            invalidateDependents(env, name);
+            return node;
+        }
+
+        // Evaluation reduces the tree in place, keep an untouched copy to recompute from.
+        ASTNode source = copy(body);
+        ASTNode res = normalize(eval(body));
+        env.define(name, res, source);
+        invalidateDependents(env, name);
+        return res;
+    }
+
+    /**
+     * Marks every value computed from name, directly or indirectly, for recomputation on its next lookup.
+     * Functions are looked up late anyway and need nothing.
+     */
+    private static void invalidateDependents(Environment env, String name) {
+        for (String dependent : env.dependents(name)) {
+            ASTNode source = env.source(dependent);
+            if (Objects.isNull(source)) continue;
+            env.invalidate(dependent, recomputation(env, source));
         }
+    }
 
-        return node;
+    /**
+     * Computes a value binding of env again from the expression it was defined by.
+     */
+    static Supplier<ASTNode> recomputation(Environment env, ASTNode source) {
+        return () -> withEnvironment(env, () -> normalize(eval(copy(source))));
+    }
+
+    /**
+     * A deep copy of src that evaluation can reduce without touching the original. Resolved names are shared.
+     */
+    static ASTNode copy(ASTNode src) {
+        if (src instanceof Resolved) return src;
+
+        List<ASTNode> children = null;
+        if (Objects.nonNull(src.children())) {
+            children = new LinkedList<>();
+            for (ASTNode child : src.children()) children.add(copy(child));
+        }
+        ASTNode res = new ASTNode(src.type(), src.val(), children);
+        if (src.isFinal()) res.markFinal();
+        return res;
+    }
+
+    /**
+     * Collects like terms of a residual arithmetic result, see {@link Normalizer}. Other nodes are returned as is.
+     */
+    public static ASTNode normalize(ASTNode node) {
+        if (Objects.isNull(node)) return null;
+        return Normalizer.normalize(node);
     }
 
     public static void listVars() {
-        vars.forEach((key, value) -> System.out.println(key + " = " + value.consolePrint()));
+        Printer printer = Printer.defaults();
+        StringBuilder sb = new StringBuilder();
+        vars.get().forEach((key, value) -> sb.append(key).append(" = ").append(printer.toString(value)).append(System.lineSeparator()));
+        System.out.print(sb);
     }
 
     public static void clearVars() {
-        Set<String> varNames = vars.keySet();
-        for (String name : varNames) vars.remove(name);
-        loadDefaultFunctions();
+        Environment env = vars.get();
+        env.clear();
+        env.putAll(prelude);
     }
 
     public static ASTNode dropVar(String name) {
-        return vars.remove(name);
+        Environment env = vars.get();
+        ASTNode removed = env.remove(name);
+        invalidateDependents(env, name);
+        return removed;
+    }
+
+    /**
+     * Writes every user definition of the current environment to a binary snapshot.
+     * Definitions still identical to the default functions are left out. Values computed by let are written as
+     * the expression they are computed from, nothing is evaluated.
+     */
+    public static int save(Path file) throws IOException {
+        Environment env = vars.get();
+        Map<String, ASTNode> definitions = new TreeMap<>();
+        Set<String> computed = new HashSet<>();
+        env.forEach((name, value) -> {
+            ASTNode source = env.source(name);
+            if (Objects.nonNull(source)) {
+                definitions.put(name, source);
+                computed.add(name);
+            } else if (value != prelude.get(name)) {
+                definitions.put(name, value);
+            }
+        });
+        EnvironmentSnapshot.write(file, definitions, computed);
+        return definitions.size();
+    }
+
+    /**
+     * Adds the definitions of a snapshot to the current environment. They are only decoded on first lookup.
+     * Values computed from a name the snapshot rebinds are recomputed, as after a let.
+     */
+    public static int load(Path file) throws IOException {
+        Environment env = vars.get();
+        Environment loaded = new Environment();
+        int count = EnvironmentSnapshot.read(file, loaded);
+        env.putAll(loaded);
+        for (String name : loaded.names()) {
+            ASTNode source = env.source(name);
+            if (Objects.nonNull(source)) env.invalidate(name, recomputation(env, source));
+            invalidateDependents(env, name);
+        }
+        return count;
     }
 
     public static void loadDefaultFunctions() {
@@ -343,6 +654,9 @@ public class Interpreter {
 
         /** Floor division **/
         eval("let fdiv = f(x) => f(y) => (x - x % y)/y");
+
+        /* Aggregates over integer ranges: sum, product, fold */
+        Builtins.register(vars.get());
         /* Exponentiation */
         // exp(2)(3) = 8
         // exp(3)(4) = 81
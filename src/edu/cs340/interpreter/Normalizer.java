@@ -0,0 +1,224 @@
+package edu.cs340.interpreter;
+
+import edu.cs340.number.Num;
+import edu.cs340.parser.ASTNode;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+
+import static edu.cs340.parser.Parser.ls;
+
+/**
+ * Rewrites residual arithmetic into a canonical sum of products.
+ *
+ * The tree is read as a quotient of two sparse polynomials over its free variables: like terms are collected,
+ * constants are combined and terms are sorted by degree and variable name. Sub trees that are not polynomial
+ * (applications, functions, fractional powers, modulus, ...) are kept as they are and treated as one more variable.
+ * A tree whose expansion would be too large, see {@link Polynomial}, is returned as it was.
+ */
+class Normalizer {
+
+    /* Larger integer powers are left alone, expanding them would make the result bigger, not smaller. */
+    private static final int MAX_EXPANDED_POWER = 16;
+
+    private final Map<String, ASTNode> atoms = new HashMap<>();
+
+    private Normalizer() {
+    }
+
+    /**
+     * Canonical form of a residual arithmetic tree. Anything else, including plain numbers, is returned unchanged.
+     */
+    static ASTNode normalize(ASTNode node) {
+        if (!isArithmetic(node)) return node;
+        Normalizer n = new Normalizer();
+        try {
+            return n.toTree(n.rational(node));
+        } catch (Polynomial.TooLarge ex) {
+            return node;
+        }
+    }
+
+    private static boolean isArithmetic(ASTNode node) {
+        switch (node.type()) {
+            case PLUS:
+            case MINUS:
+            case MULT:
+            case DIV:
+            case POW:
+            case NEGATION:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private Rational rational(ASTNode node) {
+        switch (node.type()) {
+            case NUM:
+                return new Rational(Polynomial.constant(Num.of(node.val())));
+            case ID:
+                return atom((String) node.val(), node);
+            case NEGATION:
+                return rational(node.children().get(0)).negate();
+            case PLUS:
+                return rational(node.children().get(0)).add(rational(node.children().get(1)));
+            case MINUS:
+                return rational(node.children().get(0)).add(rational(node.children().get(1)).negate());
+            case MULT:
+                return rational(node.children().get(0)).multiply(rational(node.children().get(1)));
+            case DIV: {
+                Rational divisor = rational(node.children().get(1));
+                if (divisor.num.equals(Polynomial.ZERO)) return opaque(node);
+                return rational(node.children().get(0)).divide(divisor);
+            }
+            case POW: {
+                ASTNode exp = node.children().get(1);
+                if (exp.type() == ASTNode.Type.NUM) {
+                    Num e = Num.of(exp.val());
+                    if (e.isInteger() && e.signum() >= 0 && e.compareTo(Num.of(MAX_EXPANDED_POWER)) <= 0) {
+                        return rational(node.children().get(0)).pow(e.numerator().intValue());
+                    }
+                }
+                return opaque(node);
+            }
+            default:
+                return opaque(node);
+        }
+    }
+
+    private Rational atom(String key, ASTNode node) {
+        atoms.putIfAbsent(key, node);
+        return new Rational(Polynomial.variable(key));
+    }
+
+    /* Opaque trees sort after every plain variable. */
+    private Rational opaque(ASTNode node) {
+        StringBuilder key = new StringBuilder("~");
+        structuralKey(node, key);
+        return atom(key.toString(), node);
+    }
+
+    private static void structuralKey(ASTNode node, StringBuilder sb) {
+        sb.append(node.type()).append('[').append(node.val());
+        if (Objects.nonNull(node.children())) {
+            for (ASTNode child : node.children()) {
+                sb.append(' ');
+                structuralKey(child, sb);
+            }
+        }
+        sb.append(']');
+    }
+
+    private ASTNode toTree(Rational r) {
+        ASTNode num = toTree(r.num);
+        if (r.den.equals(Polynomial.ONE)) return num;
+        return new ASTNode(ASTNode.Type.DIV, "/", ls(num, toTree(r.den)));
+    }
+
+    private ASTNode toTree(Polynomial p) {
+        ASTNode res = null;
+        for (Map.Entry<Polynomial.Monomial, Num> term : p.terms().entrySet()) {
+            Num c = term.getValue();
+            if (Objects.isNull(res)) {
+                res = term(c, term.getKey());
+            } else if (c.signum() < 0) {
+                res = new ASTNode(ASTNode.Type.MINUS, "-", ls(res, term(c.negate(), term.getKey())));
+            } else {
+                res = new ASTNode(ASTNode.Type.PLUS, "+", ls(res, term(c, term.getKey())));
+            }
+        }
+        return Objects.isNull(res) ? new ASTNode(ASTNode.Type.NUM, Num.ZERO) : res;
+    }
+
+    /**
+     * A coefficient without a finite decimal expansion is written as a quotient, so printing it loses nothing.
+     */
+    private static ASTNode coefficient(Num c) {
+        if (c.isInteger() || !c.isExact()) return new ASTNode(ASTNode.Type.NUM, c);
+        try {
+            new BigDecimal(c.numerator()).divide(new BigDecimal(c.denominator()));
+            return new ASTNode(ASTNode.Type.NUM, c);
+        } catch (ArithmeticException ex) {
+            return new ASTNode(ASTNode.Type.DIV, "/", ls(new ASTNode(ASTNode.Type.NUM, Num.rational(c.numerator(), BigInteger.ONE)),
+                    new ASTNode(ASTNode.Type.NUM, Num.rational(c.denominator(), BigInteger.ONE))));
+        }
+    }
+
+    private ASTNode term(Num c, Polynomial.Monomial m) {
+        ASTNode product = null;
+        for (Map.Entry<String, Integer> factor : m.powers().entrySet()) {
+            ASTNode f = atoms.get(factor.getKey());
+            if (factor.getValue() > 1) {
+                f = new ASTNode(ASTNode.Type.POW, "^", ls(f, new ASTNode(ASTNode.Type.NUM, Num.of((long) factor.getValue()))));
+            }
+            product = Objects.isNull(product) ? f : new ASTNode(ASTNode.Type.MULT, "*", ls(product, f));
+        }
+
+        if (Objects.isNull(product)) return coefficient(c);
+        if (c.isOne()) return product;
+        if (c.negate().isOne()) return new ASTNode(ASTNode.Type.NEGATION, ls(product));
+        return new ASTNode(ASTNode.Type.MULT, "*", ls(coefficient(c), product));
+    }
+
+    /**
+     * num / den, with den kept at one whenever it is a constant. Otherwise the constant and monomial factors common
+     * to num and den are divided out and den has coprime integer coefficients with a positive leading term, so
+     * coefficients don't grow from one operation to the next. Common polynomial factors are not looked for.
+     */
+    private static class Rational {
+        final Polynomial num;
+        final Polynomial den;
+
+        Rational(Polynomial num) {
+            this(num, Polynomial.ONE);
+        }
+
+        Rational(Polynomial num, Polynomial den) {
+            Budget.step();
+            if (num.equals(Polynomial.ZERO)) {
+                den = Polynomial.ONE;
+            } else if (!den.equals(Polynomial.ONE) && den.isConstant() && !den.equals(Polynomial.ZERO)) {
+                num = num.scale(den.constantValue().reciprocal());
+                den = Polynomial.ONE;
+            } else if (!den.isConstant()) {
+                Polynomial.Monomial common = num.commonFactor().gcd(den.commonFactor());
+                num = num.divide(common);
+                den = den.divide(common);
+                Num content = den.content();
+                if (!content.isOne()) {
+                    num = num.scale(content.reciprocal());
+                    den = den.scale(content.reciprocal());
+                }
+                if (den.isConstant()) {
+                    num = num.scale(den.constantValue().reciprocal());
+                    den = Polynomial.ONE;
+                }
+            }
+            this.num = num;
+            this.den = den;
+        }
+
+        Rational negate() {
+            return new Rational(num.negate(), den);
+        }
+
+        Rational add(Rational other) {
+            if (den.equals(other.den)) return new Rational(num.add(other.num), den);
+            return new Rational(num.multiply(other.den).add(other.num.multiply(den)), den.multiply(other.den));
+        }
+
+        Rational multiply(Rational other) {
+            return new Rational(num.multiply(other.num), den.multiply(other.den));
+        }
+
+        Rational divide(Rational other) {
+            return new Rational(num.multiply(other.den), den.multiply(other.num));
+        }
+
+        Rational pow(int exp) {
+            return new Rational(num.pow(exp), den.pow(exp));
+        }
+    }
+}
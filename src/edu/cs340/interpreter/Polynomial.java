@@ -0,0 +1,262 @@
+package edu.cs340.interpreter;
+
+import edu.cs340.number.Num;
+
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * Immutable sparse polynomial with exact coefficients.
+ *
+ * Terms are kept in a sorted map from monomial to coefficient and zero coefficients are never stored, so two equal
+ * polynomials always have equal maps. Every term visited counts as a step of the running {@link Budget}, and a
+ * product of more than calc.normalize.terms pairs of terms (4096 by default) is refused with {@link TooLarge}.
+ */
+final class Polynomial {
+
+    private static final int MAX_PRODUCT_TERMS = Integer.getInteger("calc.normalize.terms", 4096);
+
+    static final Polynomial ZERO = new Polynomial(new TreeMap<>());
+    static final Polynomial ONE = constant(Num.ONE);
+
+    private final TreeMap<Monomial, Num> terms;
+
+    private Polynomial(TreeMap<Monomial, Num> terms) {
+        this.terms = terms;
+    }
+
+    static Polynomial constant(Num c) {
+        TreeMap<Monomial, Num> terms = new TreeMap<>();
+        if (!c.isZero()) terms.put(Monomial.ONE, c);
+        return new Polynomial(terms);
+    }
+
+    static Polynomial variable(String name) {
+        TreeMap<Monomial, Num> terms = new TreeMap<>();
+        terms.put(Monomial.of(name), Num.ONE);
+        return new Polynomial(terms);
+    }
+
+    Map<Monomial, Num> terms() {
+        return Collections.unmodifiableMap(terms);
+    }
+
+    int size() {
+        return terms.size();
+    }
+
+    boolean isConstant() {
+        return terms.isEmpty() || (terms.size() == 1 && terms.containsKey(Monomial.ONE));
+    }
+
+    Num constantValue() {
+        return terms.getOrDefault(Monomial.ONE, Num.ZERO);
+    }
+
+    Polynomial add(Polynomial other) {
+        TreeMap<Monomial, Num> res = new TreeMap<>(terms);
+        other.terms.forEach((m, c) -> {
+            Budget.step();
+            addTerm(res, m, c);
+        });
+        return new Polynomial(res);
+    }
+
+    Polynomial negate() {
+        return scale(Num.ONE.negate());
+    }
+
+    Polynomial subtract(Polynomial other) {
+        return add(other.negate());
+    }
+
+    Polynomial scale(Num factor) {
+        if (factor.isZero()) return ZERO;
+        TreeMap<Monomial, Num> res = new TreeMap<>();
+        terms.forEach((m, c) -> {
+            Budget.step();
+            res.put(m, c.multiply(factor));
+        });
+        return new Polynomial(res);
+    }
+
+    Polynomial multiply(Polynomial other) {
+        if ((long) terms.size() * other.terms.size() > MAX_PRODUCT_TERMS) throw new TooLarge();
+
+        TreeMap<Monomial, Num> res = new TreeMap<>();
+        for (Map.Entry<Monomial, Num> a : terms.entrySet()) {
+            for (Map.Entry<Monomial, Num> b : other.terms.entrySet()) {
+                Budget.step();
+                addTerm(res, a.getKey().multiply(b.getKey()), a.getValue().multiply(b.getValue()));
+            }
+        }
+        return new Polynomial(res);
+    }
+
+    /**
+     * The positive exact constant that leaves integer coefficients without a common divisor when divided out, and
+     * the sign of the leading term. One when a coefficient is inexact or there are no terms.
+     */
+    Num content() {
+        BigInteger gcd = BigInteger.ZERO;
+        BigInteger lcm = BigInteger.ONE;
+        for (Num c : terms.values()) {
+            if (!c.isExact()) return Num.ONE;
+            gcd = gcd.gcd(c.numerator());
+            lcm = lcm.divide(lcm.gcd(c.denominator())).multiply(c.denominator());
+        }
+        if (gcd.signum() == 0) return Num.ONE;
+        Num content = Num.rational(gcd, lcm);
+        return terms.firstEntry().getValue().signum() < 0 ? content.negate() : content;
+    }
+
+    /**
+     * The largest monomial dividing every term, ONE for a polynomial with a constant term or no terms.
+     */
+    Monomial commonFactor() {
+        Monomial res = null;
+        for (Monomial m : terms.keySet()) res = Objects.isNull(res) ? m : res.gcd(m);
+        return Objects.isNull(res) ? Monomial.ONE : res;
+    }
+
+    Polynomial divide(Monomial factor) {
+        if (factor.powers.isEmpty()) return this;
+        TreeMap<Monomial, Num> res = new TreeMap<>();
+        terms.forEach((m, c) -> res.put(m.divide(factor), c));
+        return new Polynomial(res);
+    }
+
+    Polynomial pow(int exp) {
+        Polynomial res = ONE;
+        Polynomial base = this;
+        while (exp > 0) {
+            if ((exp & 1) == 1) res = res.multiply(base);
+            exp >>= 1;
+            if (exp > 0) base = base.multiply(base);
+        }
+        return res;
+    }
+
+    private static void addTerm(TreeMap<Monomial, Num> terms, Monomial m, Num c) {
+        Num sum = terms.getOrDefault(m, Num.ZERO).add(c);
+        if (sum.isZero()) terms.remove(m);
+        else terms.put(m, sum);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Polynomial)) return false;
+        return terms.equals(((Polynomial) o).terms);
+    }
+
+    @Override
+    public int hashCode() {
+        return terms.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return terms.toString();
+    }
+
+    /**
+     * Product of variables raised to positive integer powers, ordered by total degree (highest first) and then by
+     * variable names.
+     */
+    static final class Monomial implements Comparable<Monomial> {
+
+        static final Monomial ONE = new Monomial(new TreeMap<>());
+
+        private final TreeMap<String, Integer> powers;
+        private final int degree;
+
+        private Monomial(TreeMap<String, Integer> powers) {
+            this.powers = powers;
+            int d = 0;
+            for (int p : powers.values()) d += p;
+            this.degree = d;
+        }
+
+        static Monomial of(String name) {
+            TreeMap<String, Integer> powers = new TreeMap<>();
+            powers.put(name, 1);
+            return new Monomial(powers);
+        }
+
+        Map<String, Integer> powers() {
+            return Collections.unmodifiableMap(powers);
+        }
+
+        Monomial multiply(Monomial other) {
+            if (other.powers.isEmpty()) return this;
+            if (powers.isEmpty()) return other;
+            TreeMap<String, Integer> res = new TreeMap<>(powers);
+            other.powers.forEach((v, p) -> res.merge(v, p, Integer::sum));
+            return new Monomial(res);
+        }
+
+        Monomial gcd(Monomial other) {
+            TreeMap<String, Integer> res = new TreeMap<>();
+            powers.forEach((v, p) -> {
+                Integer q = other.powers.get(v);
+                if (Objects.nonNull(q)) res.put(v, Math.min(p, q));
+            });
+            return res.isEmpty() ? ONE : new Monomial(res);
+        }
+
+        /* Only called with a factor that divides this. */
+        Monomial divide(Monomial factor) {
+            TreeMap<String, Integer> res = new TreeMap<>(powers);
+            factor.powers.forEach((v, p) -> {
+                int left = res.get(v) - p;
+                if (left == 0) res.remove(v);
+                else res.put(v, left);
+            });
+            return res.isEmpty() ? ONE : new Monomial(res);
+        }
+
+        @Override
+        public int compareTo(Monomial other) {
+            if (degree != other.degree) return Integer.compare(other.degree, degree);
+
+            Iterator<Map.Entry<String, Integer>> a = powers.entrySet().iterator();
+            Iterator<Map.Entry<String, Integer>> b = other.powers.entrySet().iterator();
+            while (a.hasNext() && b.hasNext()) {
+                Map.Entry<String, Integer> x = a.next();
+                Map.Entry<String, Integer> y = b.next();
+                int byName = x.getKey().compareTo(y.getKey());
+                if (byName != 0) return byName;
+                int byPower = Integer.compare(y.getValue(), x.getValue());
+                if (byPower != 0) return byPower;
+            }
+            return Boolean.compare(a.hasNext(), b.hasNext());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Monomial && powers.equals(((Monomial) o).powers);
+        }
+
+        @Override
+        public int hashCode() {
+            return powers.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return powers.toString();
+        }
+    }
+
+    /**
+     * Thrown instead of expanding a product whose size has no useful bound.
+     */
+    static final class TooLarge extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        TooLarge() {
+            super("Polynomial too large to expand", null, false, false);
+        }
+    }
+}
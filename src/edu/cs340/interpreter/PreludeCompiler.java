@@ -0,0 +1,36 @@
+package edu.cs340.interpreter;
+
+import edu.cs340.parser.ASTNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Build step that parses the default functions once and writes them as a snapshot next to the Interpreter class,
+ * so starting the calculator does not have to lex, parse and evaluate the prelude again.
+ *
+ * Usage: PreludeCompiler {classes output directory}
+ */
+public class PreludeCompiler {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) throw new IllegalArgumentException("Usage: PreludeCompiler {classes directory}");
+
+        Environment env = new Environment();
+        Interpreter.withEnvironment(env, () -> {
+            Interpreter.loadDefaultFunctions();
+            return null;
+        });
+
+        Map<String, ASTNode> definitions = new TreeMap<>();
+        env.forEach(definitions::put);
+
+        Path out = Path.of(args[0], Interpreter.class.getPackageName().replace('.', '/'), Interpreter.PRELUDE_RESOURCE);
+        Files.createDirectories(out.getParent());
+        EnvironmentSnapshot.write(out, definitions);
+        System.out.println("Wrote " + definitions.size() + " default functions to " + out);
+    }
+}
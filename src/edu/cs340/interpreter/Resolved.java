@@ -0,0 +1,23 @@
+package edu.cs340.interpreter;
+
+import edu.cs340.parser.ASTNode;
+
+/**
+ * A name in an optimized function body that was looked up once, when the function was promoted.
+ *
+ * It prints and serializes like the ID it replaced, but evaluates straight to its target. Like any leaf it is
+ * never changed by evaluation, so copies of the body share it instead of copying it.
+ */
+final class Resolved extends ASTNode {
+
+    private final ASTNode target;
+
+    Resolved(String name, ASTNode target) {
+        super(Type.ID, name);
+        this.target = target;
+    }
+
+    ASTNode target() {
+        return target;
+    }
+}
@@ -0,0 +1,162 @@
+package edu.cs340.interpreter;
+
+import edu.cs340.metrics.Metrics;
+import edu.cs340.number.Num;
+import edu.cs340.parser.ASTNode;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Partial applications of curried functions to constant arguments, e.g. root(2) inside every sqrt(v), built once
+ * and shared.
+ *
+ * An entry is keyed on the identity of the applied function and the values of its arguments, so redefining a name
+ * binds a new function and simply stops hitting the old entries. Arguments are compared as numbers, root(2) and
+ * root(2.0) share an entry. Only functions looked up by their registered name are specialized; any other function
+ * definition, such as the next stage of a curried function, is a fresh copy on every application and would only
+ * fill the cache. The cached result is a function whose constant arithmetic was folded when it was built.
+ * Function definitions are never changed by evaluation, applying one copies its body first, so one instance can
+ * be returned to every caller.
+ *
+ * Lookups take no lock. Beyond calc.specialize.size entries the least recently used one is dropped, by a scan
+ * that only a miss on a full cache pays for.
+ */
+final class Specializations {
+
+    private static final int CAPACITY = Integer.getInteger("calc.specialize.size", 256);
+
+    private static final Map<Key, Entry> cache = new ConcurrentHashMap<>();
+    private static final AtomicLong clock = new AtomicLong();
+
+    private Specializations() {
+    }
+
+    /**
+     * Whether applying fn to args gives another function and every argument is a number.
+     */
+    static boolean applies(ASTNode fn, ASTNode args) {
+        if (CAPACITY <= 0 || fn.children().get(1).type() != ASTNode.Type.FUNC_DEF) return false;
+        if (args.children().size() != fn.children().get(0).children().size()) return false;
+        for (ASTNode arg : args.children()) {
+            if (arg.type() != ASTNode.Type.NUM) return false;
+        }
+        return true;
+    }
+
+    /**
+     * The cached specialization of fn to args, built with specialize on a miss.
+     */
+    static ASTNode get(ASTNode fn, ASTNode args, Supplier<ASTNode> specialize) {
+        Key key = new Key(fn, args.children());
+        Entry hit = cache.get(key);
+        Metrics.specialization(Objects.nonNull(hit));
+        if (Objects.nonNull(hit)) {
+            hit.used = clock.incrementAndGet();
+            return hit.value;
+        }
+
+        // Built outside any lock; two threads missing at once both build, the results are equivalent.
+        ASTNode res = fold(specialize.get());
+        cache.put(key, new Entry(res, clock.incrementAndGet()));
+        while (cache.size() > CAPACITY) evictEldest();
+        return res;
+    }
+
+    static void clear() {
+        cache.clear();
+    }
+
+    static int size() {
+        return cache.size();
+    }
+
+    private static void evictEldest() {
+        Map.Entry<Key, Entry> eldest = null;
+        for (Map.Entry<Key, Entry> e : cache.entrySet()) {
+            if (Objects.isNull(eldest) || e.getValue().used < eldest.getValue().used) eldest = e;
+        }
+        if (Objects.nonNull(eldest)) cache.remove(eldest.getKey(), eldest.getValue());
+    }
+
+    /**
+     * Replaces arithmetic on numbers only by its value, leaving anything that fails to evaluate as it was so that
+     * errors still surface where, and if, the expression is reached. Running out of budget stops folding too.
+     * Factorials are left alone, their cost has no bound known up front.
+     */
+    static ASTNode fold(ASTNode node) {
+        List<ASTNode> children = node.children();
+        if (Objects.isNull(children) || children.isEmpty()) return node;
+
+        boolean constant = true;
+        for (int i = 0; i < children.size(); i++) {
+            ASTNode child = fold(children.get(i));
+            children.set(i, child);
+            constant &= child.type() == ASTNode.Type.NUM;
+        }
+        if (!constant) return node;
+
+        switch (node.type()) {
+            case PLUS:
+            case MINUS:
+            case MULT:
+            case DIV:
+            case FLOOR_DIV:
+            case MOD:
+            case POW:
+            case NEGATION:
+                try {
+                    return Interpreter.eval(node);
+                } catch (BudgetExceededException ex) {
+                    throw ex;
+                } catch (ArithmeticException | IllegalStateException ex) {
+                    return node;
+                }
+            default:
+                return node;
+        }
+    }
+
+    private static final class Entry {
+        private final ASTNode value;
+        private volatile long used;
+
+        Entry(ASTNode value, long used) {
+            this.value = value;
+            this.used = used;
+        }
+    }
+
+    private static final class Key {
+        private final ASTNode fn;
+        private final Object[] args;
+        private final int hash;
+
+        Key(ASTNode fn, List<ASTNode> args) {
+            this.fn = fn;
+            this.args = new Object[args.size()];
+            for (int i = 0; i < this.args.length; i++) this.args[i] = value(args.get(i));
+            this.hash = System.identityHashCode(fn) * 31 + Arrays.hashCode(this.args);
+        }
+
+        /* Exact numbers have one representation each; a decimal is compared by value, whatever its scale. */
+        private static Object value(ASTNode arg) {
+            Num n = Num.of(arg.val());
+            return n.isExact() ? n : n.toBigDecimal().stripTrailingZeros();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return fn == other.fn && Arrays.equals(args, other.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package edu.cs340.interpreter;
+
+import edu.cs340.metrics.Metrics;
+import edu.cs340.number.Num;
+import edu.cs340.parser.ASTNode;
+
+import java.math.BigDecimal;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hotness counters and optimized versions of the functions registered in one environment.
+ *
+ * Every application of a registered function is counted. Once a function was applied calc.tier.threshold times
+ * (1000 by default, 0 turns tiering off) it is promoted: its body is rebuilt once with every registered name it
+ * mentions resolved to the current binding, integer literals turned into exact numbers and constant arithmetic
+ * folded. Applications then use that version. The environment drops it again, together with the versions of all
+ * functions depending on it, as soon as any binding involved changes.
+ */
+final class Tiers {
+
+    private static final int THRESHOLD = Integer.getInteger("calc.tier.threshold", 1000);
+
+    private final Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+    private final Map<String, ASTNode> optimized = new ConcurrentHashMap<>();
+
+    /**
+     * Counts an application of name and returns its optimized version, or null while it is still cold.
+     */
+    ASTNode applied(String name, Environment env) {
+        if (THRESHOLD <= 0) return null;
+
+        ASTNode hot = optimized.get(name);
+        if (Objects.nonNull(hot)) return hot;
+
+        int count = counts.computeIfAbsent(name, n -> new AtomicInteger()).incrementAndGet();
+        if (count < THRESHOLD) return null;
+        return promote(name, env);
+    }
+
+    void deoptimize(String name) {
+        counts.remove(name);
+        if (Objects.nonNull(optimized.remove(name))) Metrics.tier(false);
+    }
+
+    void clear() {
+        counts.clear();
+        optimized.clear();
+    }
+
+    private ASTNode promote(String name, Environment env) {
+        ASTNode def = env.get(name);
+        if (Objects.isNull(def) || def.type() != ASTNode.Type.FUNC_DEF) {
+            counts.remove(name);
+            return null;
+        }
+
+        // The body is built into the node first so that recursive calls can resolve to the optimized version.
+        List<ASTNode> children = new LinkedList<>();
+        ASTNode res = new ASTNode(ASTNode.Type.FUNC_DEF, children);
+        children.add(def.children().get(0));
+        children.add(Specializations.fold(optimize(def.children().get(1), name, res, env)));
+
+        // Functions that resolved name while it was cold pick up this version when they are promoted again.
+        for (String dependent : env.dependents(name)) {
+            if (!dependent.equals(name)) deoptimize(dependent);
+        }
+        optimized.put(name, res);
+        Metrics.tier(true);
+        return res;
+    }
+
+    private ASTNode optimize(ASTNode node, String self, ASTNode optimizedSelf, Environment env) {
+        switch (node.type()) {
+            case ID: {
+                String id = (String) node.val();
+                if (id.indexOf('*') >= 0) break;
+                if (id.equals(self)) return new Resolved(id, optimizedSelf);
+
+                ASTNode target = optimized.get(id);
+                if (Objects.isNull(target)) target = env.get(id);
+                if (Objects.isNull(target)) break;
+                if (target.type() == ASTNode.Type.FUNC_DEF) return new Resolved(id, target);
+                if (target.type() == ASTNode.Type.NUM) return target;
+                break;
+            }
+            case NUM:
+                if (node.val() instanceof BigDecimal && ((BigDecimal) node.val()).scale() <= 0)
+                    return new ASTNode(ASTNode.Type.NUM, Num.of((BigDecimal) node.val()));
+                break;
+            default:
+                break;
+        }
+
+        List<ASTNode> children = null;
+        if (Objects.nonNull(node.children())) {
+            children = new LinkedList<>();
+            for (ASTNode child : node.children()) children.add(optimize(child, self, optimizedSelf, env));
+        }
+        ASTNode res = new ASTNode(node.type(), node.val(), children);
+        if (node.isFinal()) res.markFinal();
+        return res;
+    }
+}
@@ -1,5 +1,7 @@
 package edu.cs340.lexer;
 
+import edu.cs340.metrics.Metrics;
+
 import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -27,6 +29,8 @@ public class Lexer {
 
     private String src;
     private int cursor = 0;
+    private int tokens = 0;
+    private long nanos = 0;
 
     public Lexer() {
     }
@@ -38,6 +42,8 @@ public class Lexer {
     public void init(String src) {
         this.src = src;
         cursor = 0;
+        tokens = 0;
+        nanos = 0;
     }
 
     public boolean hasNextToken() {
@@ -45,6 +51,30 @@ public class Lexer {
     }
 
     public Token nextToken() {
+        tokens++;
+        if (!Metrics.detailed()) return scan();
+
+        long start = System.nanoTime();
+        Token t = scan();
+        nanos += System.nanoTime() - start;
+        return t;
+    }
+
+    /**
+     * Number of tokens produced since the last init.
+     */
+    public int tokens() {
+        return tokens;
+    }
+
+    /**
+     * Time spent producing those tokens, only measured while metrics are detailed.
+     */
+    public long nanos() {
+        return nanos;
+    }
+
+    private Token scan() {
         if (cursor == src.length()) return new Token("", Type.EOF);
 
         String match = null;
@@ -60,7 +90,7 @@ public class Lexer {
 
         if (Objects.nonNull(match)) {
             cursor += match.length();
-            if (Objects.isNull(matchedSpec.t)) return nextToken();
+            if (Objects.isNull(matchedSpec.t)) return scan();
             return new Token(match, matchedSpec.t);
         }
         throw new IllegalArgumentException("Illegal character found in input: " + src.charAt(cursor));
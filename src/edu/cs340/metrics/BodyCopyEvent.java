@@ -0,0 +1,15 @@
+package edu.cs340.metrics;
+
+import jdk.jfr.*;
+
+@Name("edu.cs340.BodyCopy")
+@Label("Function Body Copy")
+@Category("Calculator")
+@Description("Copy of a function body with the actual parameters substituted")
+@StackTrace(false)
+@Enabled(false)
+public class BodyCopyEvent extends Event {
+
+    @Label("Nodes Copied")
+    public int nodes;
+}
@@ -0,0 +1,17 @@
+package edu.cs340.metrics;
+
+import jdk.jfr.*;
+
+@Name("edu.cs340.Evaluation")
+@Label("Evaluation")
+@Category("Calculator")
+@Description("Evaluation of one line until the result stops changing")
+@StackTrace(false)
+public class EvaluationEvent extends Event {
+
+    @Label("Source")
+    public String source;
+
+    @Label("Rounds")
+    public int rounds;
+}
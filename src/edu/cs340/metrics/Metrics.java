@@ -0,0 +1,191 @@
+package edu.cs340.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process wide counters for every phase of the pipeline.
+ * The counters are striped, so recording is cheap enough to leave on even when several threads evaluate at once.
+ * The clock is read once per parse and once per evaluation; timing every token and numeric operation as well
+ * costs more than the work it measures, so that detail waits for calc.metrics.detail.
+ */
+public class Metrics {
+
+    /* Rough footprint of one copied node: the ASTNode, its LinkedList and one list entry per child. */
+    private static final long NODE_BYTES = 32;
+    private static final long LIST_BYTES = 32;
+    private static final long LIST_ENTRY_BYTES = 24;
+
+    private static volatile boolean enabled = Boolean.parseBoolean(System.getProperty("calc.metrics", "true"));
+    private static volatile boolean detailed = Boolean.getBoolean("calc.metrics.detail");
+
+    private static final LongAdder tokensLexed = new LongAdder();
+    private static final LongAdder lexNanos = new LongAdder();
+    private static final LongAdder parses = new LongAdder();
+    private static final LongAdder parseNanos = new LongAdder();
+    private static final LongAdder evaluations = new LongAdder();
+    private static final LongAdder evalNanos = new LongAdder();
+    private static final LongAdder nodesEvaluated = new LongAdder();
+    private static final LongAdder applications = new LongAdder();
+    private static final LongAdder bodyCopyNodes = new LongAdder();
+    private static final LongAdder bodyCopyBytes = new LongAdder();
+    private static final LongAdder varLookupHits = new LongAdder();
+    private static final LongAdder varLookupMisses = new LongAdder();
+    private static final LongAdder numericOps = new LongAdder();
+    private static final LongAdder numericNanos = new LongAdder();
+    private static final LongAdder specializationHits = new LongAdder();
+    private static final LongAdder specializationMisses = new LongAdder();
+    private static final LongAdder tierPromotions = new LongAdder();
+    private static final LongAdder tierDeoptimizations = new LongAdder();
+
+    private Metrics() {
+    }
+
+    /**
+     * Whether the pipeline records anything: while off, nothing reads the clock, counts or creates JFR events.
+     * Starts as set by calc.metrics, true by default.
+     */
+    public static boolean enabled() {
+        return enabled;
+    }
+
+    public static void enabled(boolean on) {
+        enabled = on;
+    }
+
+    /**
+     * Whether lexing and numeric operations are timed one by one, which only counts while metrics are enabled.
+     * Starts as set by calc.metrics.detail, false by default.
+     */
+    public static boolean detailed() {
+        return enabled && detailed;
+    }
+
+    public static void detailed(boolean on) {
+        detailed = on;
+    }
+
+    /**
+     * Records the tokens of one parse; nanos stays 0 unless metrics are detailed.
+     */
+    public static void lexed(int tokens, long nanos) {
+        if (!enabled) return;
+        tokensLexed.add(tokens);
+        lexNanos.add(nanos);
+    }
+
+    public static void parsed(long nanos) {
+        if (!enabled) return;
+        parses.increment();
+        parseNanos.add(nanos);
+    }
+
+    public static void evaluated(long nanos) {
+        if (!enabled) return;
+        evaluations.increment();
+        evalNanos.add(nanos);
+    }
+
+    public static void nodeEvaluated() {
+        if (enabled) nodesEvaluated.increment();
+    }
+
+    public static void application() {
+        if (enabled) applications.increment();
+    }
+
+    public static void nodeCopied(int children) {
+        if (!enabled) return;
+        bodyCopyNodes.increment();
+        bodyCopyBytes.add(NODE_BYTES + LIST_BYTES + LIST_ENTRY_BYTES * children);
+    }
+
+    public static void varLookup(boolean hit) {
+        if (!enabled) return;
+        if (hit) varLookupHits.increment();
+        else varLookupMisses.increment();
+    }
+
+    public static void numericOp() {
+        if (enabled) numericOps.increment();
+    }
+
+    public static void numericKernel(long nanos) {
+        if (!enabled) return;
+        numericOps.increment();
+        numericNanos.add(nanos);
+    }
+
+    public static void specialization(boolean hit) {
+        if (!enabled) return;
+        if (hit) specializationHits.increment();
+        else specializationMisses.increment();
+    }
+
+    public static void tier(boolean promoted) {
+        if (!enabled) return;
+        if (promoted) tierPromotions.increment();
+        else tierDeoptimizations.increment();
+    }
+
+    public static void reset() {
+        for (LongAdder counter : new LongAdder[]{tokensLexed, lexNanos, parses, parseNanos, evaluations, evalNanos,
+                nodesEvaluated, applications, bodyCopyNodes, bodyCopyBytes, varLookupHits, varLookupMisses,
+                numericOps, numericNanos, specializationHits, specializationMisses,
+                tierPromotions, tierDeoptimizations}) {
+            counter.reset();
+        }
+    }
+
+    public static Snapshot snapshot() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        values.put("tokens.lexed", tokensLexed.sum());
+        values.put("lex.nanos", lexNanos.sum());
+        values.put("parses", parses.sum());
+        values.put("parse.nanos", parseNanos.sum());
+        values.put("evaluations", evaluations.sum());
+        values.put("eval.nanos", evalNanos.sum());
+        values.put("nodes.evaluated", nodesEvaluated.sum());
+        values.put("applications", applications.sum());
+        values.put("bodycopy.nodes", bodyCopyNodes.sum());
+        values.put("bodycopy.bytes", bodyCopyBytes.sum());
+        values.put("vars.hits", varLookupHits.sum());
+        values.put("vars.misses", varLookupMisses.sum());
+        values.put("numeric.ops", numericOps.sum());
+        values.put("numeric.nanos", numericNanos.sum());
+        values.put("specializations.hits", specializationHits.sum());
+        values.put("specializations.misses", specializationMisses.sum());
+        values.put("tier.promotions", tierPromotions.sum());
+        values.put("tier.deoptimizations", tierDeoptimizations.sum());
+        return new Snapshot(values);
+    }
+
+    /**
+     * Point in time copy of every counter. Parse time includes the time spent lexing.
+     */
+    public static class Snapshot {
+        private final Map<String, Long> values;
+
+        private Snapshot(Map<String, Long> values) {
+            this.values = values;
+        }
+
+        public long get(String name) {
+            Long value = values.get(name);
+            if (value == null) throw new IllegalArgumentException("Unknown metric: " + name);
+            return value;
+        }
+
+        public Map<String, Long> toMap() {
+            return new LinkedHashMap<>(values);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            values.forEach((name, value) -> sb.append(name).append(" = ").append(value).append('\n'));
+            return sb.toString();
+        }
+    }
+}
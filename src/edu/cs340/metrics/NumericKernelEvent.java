@@ -0,0 +1,15 @@
+package edu.cs340.metrics;
+
+import jdk.jfr.*;
+
+@Name("edu.cs340.NumericKernel")
+@Label("Numeric Kernel")
+@Category("Calculator")
+@Description("BigDecimal arithmetic for one operator")
+@StackTrace(false)
+@Enabled(false)
+public class NumericKernelEvent extends Event {
+
+    @Label("Operator")
+    public String operator;
+}
@@ -0,0 +1,21 @@
+package edu.cs340.metrics;
+
+import jdk.jfr.*;
+
+@Name("edu.cs340.Parse")
+@Label("Parse")
+@Category("Calculator")
+@Description("Lexing and parsing of one source line")
+@StackTrace(false)
+public class ParseEvent extends Event {
+
+    @Label("Source Length")
+    public int sourceLength;
+
+    @Label("Tokens")
+    public int tokens;
+
+    @Label("Lexing Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long lexNanos;
+}
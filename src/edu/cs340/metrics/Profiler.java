@@ -0,0 +1,185 @@
+package edu.cs340.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Per thread profiler of function applications.
+ *
+ * While {@link #run(Supplier)} is active, the interpreter reports every function application through
+ * {@link #enter(String)} and {@link #exit()}. Applications are aggregated by call path, so the report shows both
+ * a call tree and a flat per function summary with call counts, inclusive time, self time and allocated bytes.
+ */
+public class Profiler {
+
+    private static final ThreadLocal<Profiler> current = new ThreadLocal<>();
+    private static volatile int running = 0;
+
+    private static final com.sun.management.ThreadMXBean threads = threadBean();
+
+    private final Frame root = new Frame("<root>");
+    private final Deque<Frame> stack = new ArrayDeque<>();
+    private final Map<String, Integer> active = new HashMap<>();
+    private long totalNanos;
+    private long totalBytes;
+
+    public <T> T run(Supplier<T> action) {
+        stack.clear();
+        stack.push(root);
+        current.set(this);
+        synchronized (Profiler.class) {
+            running++;
+        }
+
+        long start = System.nanoTime();
+        long startBytes = allocatedBytes();
+        try {
+            return action.get();
+        } finally {
+            totalNanos += System.nanoTime() - start;
+            totalBytes += allocatedBytes() - startBytes;
+            current.remove();
+            synchronized (Profiler.class) {
+                running--;
+            }
+        }
+    }
+
+    public static void enter(String name) {
+        if (running == 0) return;
+        Profiler p = current.get();
+        if (Objects.nonNull(p)) p.push(name);
+    }
+
+    public static void exit() {
+        if (running == 0) return;
+        Profiler p = current.get();
+        if (Objects.nonNull(p)) p.pop();
+    }
+
+    private void push(String name) {
+        Frame frame = stack.peek().child(name);
+        frame.calls++;
+        frame.startNanos = System.nanoTime();
+        frame.startBytes = allocatedBytes();
+        frame.childNanos = 0;
+        frame.childBytes = 0;
+        active.merge(name, 1, Integer::sum);
+        stack.push(frame);
+    }
+
+    private void pop() {
+        if (stack.size() <= 1) return;
+        Frame frame = stack.pop();
+        long nanos = System.nanoTime() - frame.startNanos;
+        long bytes = allocatedBytes() - frame.startBytes;
+
+        frame.selfNanos += nanos - frame.childNanos;
+        frame.selfBytes += bytes - frame.childBytes;
+        // Recursive applications are already covered by the outermost one.
+        if (active.merge(frame.name, -1, Integer::sum) == 0) {
+            active.remove(frame.name);
+            frame.inclusiveNanos += nanos;
+        }
+
+        Frame parent = stack.peek();
+        parent.childNanos += nanos;
+        parent.childBytes += bytes;
+    }
+
+    /**
+     * Call tree (recursion collapsed beyond maxDepth) followed by a flat summary sorted by self time.
+     */
+    public String report(int maxDepth) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Total: %.3f ms, %d bytes allocated%n", totalNanos / 1e6, totalBytes));
+        sb.append("Call tree (calls, inclusive ms, self ms, self bytes):\n");
+        for (Frame child : sorted(root.children.values())) printTree(child, 1, maxDepth, sb);
+
+        Map<String, Frame> flat = new TreeMap<>();
+        flatten(root, flat);
+        sb.append(String.format("%-20s %10s %14s %14s %16s%n", "function", "calls", "inclusive ms", "self ms", "self bytes"));
+        List<Frame> rows = new ArrayList<>(flat.values());
+        rows.sort(Comparator.comparingLong((Frame f) -> f.selfNanos).reversed());
+        for (Frame f : rows) {
+            sb.append(String.format("%-20s %10d %14.3f %14.3f %16d%n", f.name, f.calls, f.inclusiveNanos / 1e6, f.selfNanos / 1e6, f.selfBytes));
+        }
+        return sb.toString();
+    }
+
+    private void printTree(Frame frame, int depth, int maxDepth, StringBuilder sb) {
+        for (int i = 0; i < depth; i++) sb.append("  ");
+        sb.append(String.format("%s  %d  %.3f  %.3f  %d%n", frame.name, frame.calls, inclusiveOf(frame) / 1e6, frame.selfNanos / 1e6, frame.selfBytes));
+        if (depth == maxDepth) {
+            if (!frame.children.isEmpty()) {
+                for (int i = 0; i <= depth; i++) sb.append("  ");
+                sb.append("...\n");
+            }
+            return;
+        }
+        for (Frame child : sorted(frame.children.values())) printTree(child, depth + 1, maxDepth, sb);
+    }
+
+    /* Along one path every frame is distinct, so self time of the whole subtree is its inclusive time. */
+    private static long inclusiveOf(Frame frame) {
+        long nanos = frame.selfNanos;
+        for (Frame child : frame.children.values()) nanos += inclusiveOf(child);
+        return nanos;
+    }
+
+    private static void flatten(Frame frame, Map<String, Frame> flat) {
+        for (Frame child : frame.children.values()) {
+            Frame total = flat.computeIfAbsent(child.name, name -> new Frame(name));
+            total.calls += child.calls;
+            total.inclusiveNanos += child.inclusiveNanos;
+            total.selfNanos += child.selfNanos;
+            total.selfBytes += child.selfBytes;
+            flatten(child, flat);
+        }
+    }
+
+    private static List<Frame> sorted(Collection<Frame> frames) {
+        List<Frame> res = new ArrayList<>(frames);
+        res.sort(Comparator.comparingLong(Profiler::inclusiveOf).reversed());
+        return res;
+    }
+
+    private static long allocatedBytes() {
+        if (Objects.isNull(threads)) return 0;
+        return threads.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        try {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if (!bean.isThreadAllocatedMemorySupported()) return null;
+            bean.setThreadAllocatedMemoryEnabled(true);
+            return bean;
+        } catch (ClassCastException | UnsupportedOperationException ex) {
+            return null;
+        }
+    }
+
+    private static class Frame {
+        final String name;
+        final Map<String, Frame> children = new LinkedHashMap<>();
+        long calls;
+        long inclusiveNanos;
+        long selfNanos;
+        long selfBytes;
+
+        long startNanos;
+        long startBytes;
+        long childNanos;
+        long childBytes;
+
+        Frame(String name) {
+            this.name = name;
+        }
+
+        Frame child(String name) {
+            return children.computeIfAbsent(name, n -> new Frame(n));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package edu.cs340.number;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Rational in lowest terms that no longer fits in longs. The denominator is always positive.
+ */
+final class BigRational extends Num {
+
+    private final BigInteger numerator;
+    private final BigInteger denominator;
+
+    BigRational(BigInteger numerator, BigInteger denominator) {
+        this.numerator = numerator;
+        this.denominator = denominator;
+    }
+
+    @Override
+    public BigInteger numerator() {
+        return numerator;
+    }
+
+    @Override
+    public BigInteger denominator() {
+        return denominator;
+    }
+
+    @Override
+    public int signum() {
+        return numerator.signum();
+    }
+
+    @Override
+    public boolean isExact() {
+        return true;
+    }
+
+    @Override
+    public BigDecimal toBigDecimal() {
+        return toBigDecimal(numerator, denominator);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof BigRational)) return false;
+        BigRational other = (BigRational) o;
+        return numerator.equals(other.numerator) && denominator.equals(other.denominator);
+    }
+
+    @Override
+    public int hashCode() {
+        return numerator.hashCode() * 31 + denominator.hashCode();
+    }
+}
@@ -0,0 +1,51 @@
+package edu.cs340.number;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Inexact value, the result of an operation without an exact rational answer.
+ */
+final class Decimal extends Num {
+
+    private final BigDecimal value;
+
+    Decimal(BigDecimal value) {
+        this.value = value.signum() == 0 ? BigDecimal.ZERO : value.stripTrailingZeros();
+    }
+
+    @Override
+    public BigInteger numerator() {
+        return Num.of(value).numerator();
+    }
+
+    @Override
+    public BigInteger denominator() {
+        return Num.of(value).denominator();
+    }
+
+    @Override
+    public int signum() {
+        return value.signum();
+    }
+
+    @Override
+    public boolean isExact() {
+        return false;
+    }
+
+    @Override
+    public BigDecimal toBigDecimal() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Decimal && value.equals(((Decimal) o).value);
+    }
+
+    @Override
+    public int hashCode() {
+        return value.hashCode();
+    }
+}
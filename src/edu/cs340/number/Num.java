@@ -0,0 +1,226 @@
+package edu.cs340.number;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Objects;
+
+/**
+ * Numeric tower used by the interpreter.
+ *
+ * Exact values are rationals in lowest terms: a {@link SmallRational} on long numerator and denominator while they
+ * fit, a {@link BigRational} on BigIntegers once they don't. Only operations without an exact rational result
+ * (fractional powers, roots) produce a {@link Decimal}, and anything combined with a Decimal is a Decimal.
+ * Every exact value has exactly one representation, so equal rationals are always equal objects; {@link #isZero()},
+ * {@link #isOne()} and {@link #compareTo(Num)} also compare Decimals by value.
+ */
+public abstract class Num implements Comparable<Num> {
+
+    /* Digits printed for a rational without a finite decimal expansion. */
+    public static final int OUTPUT_SCALE = 15;
+
+    public static final Num ZERO = new SmallRational(0, 1);
+    public static final Num ONE = new SmallRational(1, 1);
+
+    Num() {
+    }
+
+    public static Num of(long value) {
+        return new SmallRational(value, 1);
+    }
+
+    /**
+     * The exact rational value of a decimal.
+     */
+    public static Num of(BigDecimal value) {
+        BigInteger unscaled = value.unscaledValue();
+        int scale = value.scale();
+        if (scale <= 0) return rational(unscaled.multiply(BigInteger.TEN.pow(-scale)), BigInteger.ONE);
+        return rational(unscaled, BigInteger.TEN.pow(scale));
+    }
+
+    /**
+     * The value of a NUM node, which holds a BigDecimal straight from the parser or a Num once it was computed.
+     */
+    public static Num of(Object value) {
+        if (value instanceof Num) return (Num) value;
+        if (value instanceof BigDecimal) return of((BigDecimal) value);
+        throw new IllegalStateException("Not a number: " + value);
+    }
+
+    public static Num decimal(BigDecimal value) {
+        return new Decimal(value);
+    }
+
+    public static Num rational(BigInteger numerator, BigInteger denominator) {
+        if (denominator.signum() == 0) throw new ArithmeticException("Division by zero");
+        if (denominator.signum() < 0) {
+            numerator = numerator.negate();
+            denominator = denominator.negate();
+        }
+        BigInteger gcd = numerator.gcd(denominator);
+        if (!gcd.equals(BigInteger.ONE) && gcd.signum() != 0) {
+            numerator = numerator.divide(gcd);
+            denominator = denominator.divide(gcd);
+        }
+        if (fitsLong(numerator) && fitsLong(denominator)) return new SmallRational(numerator.longValue(), denominator.longValue());
+        return new BigRational(numerator, denominator);
+    }
+
+    static Num rational(long numerator, long denominator) {
+        if (denominator == 0) throw new ArithmeticException("Division by zero");
+        if (denominator < 0) {
+            if (numerator == Long.MIN_VALUE || denominator == Long.MIN_VALUE)
+                return rational(BigInteger.valueOf(numerator), BigInteger.valueOf(denominator));
+            numerator = -numerator;
+            denominator = -denominator;
+        }
+        long gcd = gcd(Math.abs(numerator), denominator);
+        if (gcd > 1) {
+            numerator /= gcd;
+            denominator /= gcd;
+        }
+        return new SmallRational(numerator, denominator);
+    }
+
+    private static boolean fitsLong(BigInteger value) {
+        return value.bitLength() < Long.SIZE;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        // Math.abs(Long.MIN_VALUE) is still negative, and so are the remainders it leaves.
+        return a == 0 ? 1 : Math.abs(a);
+    }
+
+    public abstract BigInteger numerator();
+
+    public abstract BigInteger denominator();
+
+    public abstract int signum();
+
+    public abstract boolean isExact();
+
+    public abstract BigDecimal toBigDecimal();
+
+    public boolean isInteger() {
+        return isExact() && denominator().equals(BigInteger.ONE);
+    }
+
+    public boolean isZero() {
+        return signum() == 0;
+    }
+
+    public boolean isOne() {
+        return compareTo(ONE) == 0;
+    }
+
+    /**
+     * Approximate number of decimal digits needed to write the value down.
+     */
+    public long digits() {
+        if (!isExact()) return toBigDecimal().precision();
+        long bits = Math.max(numerator().bitLength(), denominator().bitLength());
+        return (long) Math.ceil(bits * 0.30103) + 1;
+    }
+
+    public Num negate() {
+        if (this instanceof Decimal) return new Decimal(toBigDecimal().negate());
+        return rational(numerator().negate(), denominator());
+    }
+
+    public Num add(Num other) {
+        if (!isExact() || !other.isExact()) return new Decimal(toBigDecimal().add(other.toBigDecimal()));
+        if (this instanceof SmallRational && other instanceof SmallRational) {
+            Num res = ((SmallRational) this).tryAdd((SmallRational) other);
+            if (Objects.nonNull(res)) return res;
+        }
+        return rational(numerator().multiply(other.denominator()).add(other.numerator().multiply(denominator())),
+                denominator().multiply(other.denominator()));
+    }
+
+    public Num subtract(Num other) {
+        return add(other.negate());
+    }
+
+    public Num multiply(Num other) {
+        if (!isExact() || !other.isExact()) return new Decimal(toBigDecimal().multiply(other.toBigDecimal()));
+        if (this instanceof SmallRational && other instanceof SmallRational) {
+            Num res = ((SmallRational) this).tryMultiply((SmallRational) other);
+            if (Objects.nonNull(res)) return res;
+        }
+        return rational(numerator().multiply(other.numerator()), denominator().multiply(other.denominator()));
+    }
+
+    public Num divide(Num other) {
+        if (other.isZero()) throw new ArithmeticException("Division by zero");
+        if (!isExact() || !other.isExact())
+            return new Decimal(toBigDecimal().divide(other.toBigDecimal(), OUTPUT_SCALE, RoundingMode.HALF_UP).stripTrailingZeros());
+        return multiply(other.reciprocal());
+    }
+
+    /**
+     * Quotient truncated towards zero, like {@link BigDecimal#divideToIntegralValue(BigDecimal)}.
+     */
+    public Num divideToIntegralValue(Num other) {
+        if (other.isZero()) throw new ArithmeticException("Division by zero");
+        if (!isExact() || !other.isExact()) return new Decimal(toBigDecimal().divideToIntegralValue(other.toBigDecimal()));
+        Num q = divide(other);
+        return rational(q.numerator().divide(q.denominator()), BigInteger.ONE);
+    }
+
+    /**
+     * Remainder with the sign of the dividend, like {@link BigDecimal#remainder(BigDecimal)}.
+     */
+    public Num remainder(Num other) {
+        if (!isExact() || !other.isExact()) return new Decimal(toBigDecimal().remainder(other.toBigDecimal()));
+        return subtract(other.multiply(divideToIntegralValue(other)));
+    }
+
+    /**
+     * Exact integer power; a negative exponent gives the reciprocal.
+     */
+    public Num pow(int exp) {
+        if (!isExact()) {
+            BigDecimal res = toBigDecimal().pow(Math.abs(exp));
+            return exp >= 0 ? new Decimal(res) : ONE.divide(new Decimal(res));
+        }
+        Num res = rational(numerator().pow(Math.abs(exp)), denominator().pow(Math.abs(exp)));
+        return exp >= 0 ? res : res.reciprocal();
+    }
+
+    public Num reciprocal() {
+        if (isZero()) throw new ArithmeticException("Division by zero");
+        if (!isExact()) return ONE.divide(this);
+        return rational(denominator(), numerator());
+    }
+
+    @Override
+    public int compareTo(Num other) {
+        if (!isExact() || !other.isExact()) return toBigDecimal().compareTo(other.toBigDecimal());
+        return numerator().multiply(other.denominator()).compareTo(other.numerator().multiply(denominator()));
+    }
+
+    /**
+     * Exact decimal when the value has a finite expansion, rounded to {@link #OUTPUT_SCALE} places otherwise.
+     */
+    static BigDecimal toBigDecimal(BigInteger numerator, BigInteger denominator) {
+        BigDecimal n = new BigDecimal(numerator);
+        if (denominator.equals(BigInteger.ONE)) return n;
+        BigDecimal d = new BigDecimal(denominator);
+        try {
+            return n.divide(d);
+        } catch (ArithmeticException ex) {
+            return n.divide(d, OUTPUT_SCALE, RoundingMode.HALF_UP).stripTrailingZeros();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
@@ -0,0 +1,138 @@
+package edu.cs340.number;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Rational in lowest terms whose numerator and denominator fit in a long. The denominator is always positive.
+ */
+final class SmallRational extends Num {
+
+    /* POWERS_OF_TEN[i] is 10^(i + 1), up to the largest power of ten a long holds. */
+    private static final long[] POWERS_OF_TEN = new long[18];
+
+    static {
+        long power = 1;
+        for (int i = 0; i < POWERS_OF_TEN.length; i++) POWERS_OF_TEN[i] = power *= 10;
+    }
+
+    private final long numerator;
+    private final long denominator;
+
+    SmallRational(long numerator, long denominator) {
+        this.numerator = numerator;
+        this.denominator = denominator;
+    }
+
+    /**
+     * Sum computed on longs, or null when an intermediate result would overflow.
+     */
+    Num tryAdd(SmallRational other) {
+        try {
+            if (denominator == other.denominator)
+                return rational(Math.addExact(numerator, other.numerator), denominator);
+            return rational(Math.addExact(Math.multiplyExact(numerator, other.denominator), Math.multiplyExact(other.numerator, denominator)),
+                    Math.multiplyExact(denominator, other.denominator));
+        } catch (ArithmeticException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Product computed on longs, or null when an intermediate result would overflow.
+     */
+    Num tryMultiply(SmallRational other) {
+        try {
+            return rational(Math.multiplyExact(numerator, other.numerator), Math.multiplyExact(denominator, other.denominator));
+        } catch (ArithmeticException ex) {
+            return null;
+        }
+    }
+
+    @Override
+    public Num negate() {
+        if (numerator == Long.MIN_VALUE) return super.negate();
+        return new SmallRational(-numerator, denominator);
+    }
+
+    @Override
+    public BigInteger numerator() {
+        return BigInteger.valueOf(numerator);
+    }
+
+    @Override
+    public BigInteger denominator() {
+        return BigInteger.valueOf(denominator);
+    }
+
+    @Override
+    public int signum() {
+        return Long.signum(numerator);
+    }
+
+    @Override
+    public boolean isExact() {
+        return true;
+    }
+
+    @Override
+    public boolean isInteger() {
+        return denominator == 1;
+    }
+
+    @Override
+    public boolean isZero() {
+        return numerator == 0;
+    }
+
+    @Override
+    public boolean isOne() {
+        return numerator == 1 && denominator == 1;
+    }
+
+    @Override
+    public long digits() {
+        return Math.max(digits(numerator), digits(denominator));
+    }
+
+    /* Decimal digits of the magnitude of value, without building its string. */
+    private static int digits(long value) {
+        if (value == Long.MIN_VALUE) return 19;
+        long abs = Math.abs(value);
+        int digits = 1;
+        while (digits <= POWERS_OF_TEN.length && abs >= POWERS_OF_TEN[digits - 1]) digits++;
+        return digits;
+    }
+
+    @Override
+    public BigDecimal toBigDecimal() {
+        if (denominator == 1) return BigDecimal.valueOf(numerator);
+        return toBigDecimal(numerator(), denominator());
+    }
+
+    @Override
+    public int compareTo(Num other) {
+        if (other instanceof SmallRational) {
+            SmallRational o = (SmallRational) other;
+            if (denominator == o.denominator) return Long.compare(numerator, o.numerator);
+            try {
+                return Long.compare(Math.multiplyExact(numerator, o.denominator), Math.multiplyExact(o.numerator, denominator));
+            } catch (ArithmeticException ex) {
+                return super.compareTo(other);
+            }
+        }
+        return super.compareTo(other);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof SmallRational)) return false;
+        SmallRational other = (SmallRational) o;
+        return numerator == other.numerator && denominator == other.denominator;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(numerator) * 31 + Long.hashCode(denominator);
+    }
+}
@@ -1,7 +1,6 @@
 package edu.cs340.parser;
 
 import java.util.List;
-import java.util.Objects;
 
 public class ASTNode {
 
@@ -58,71 +57,16 @@ public class ASTNode {
         return String.format("ASTNode(Type=%s, Value=%s, isFinal=%s)", type, val, isFinal());
     }
 
+    /**
+     * The node in console notation, see {@link Printer}.
+     */
     public String consolePrint() {
-        switch (type) {
-            case PLUS: {
-                return "(" + children.get(0).consolePrint() + " + " + children.get(1).consolePrint() + ")";
-            }
-            case MINUS: {
-                return "(" + children.get(0).consolePrint() + " - " + children.get(1).consolePrint() + ")";
-            }
-            case MULT: {
-                return "(" + children.get(0).consolePrint() + " * " + children.get(1).consolePrint() + ")";
-            }
-            case DIV: {
-                return "(" + children.get(0).consolePrint() + " / " + children.get(1).consolePrint() + ")";
-            }
-            case FLOOR_DIV: {
-                return "(" + children.get(0).consolePrint() + " // " + children.get(1).consolePrint() + ")";
-            }
-            case MOD: {
-                return "(" + children.get(0).consolePrint() + " % " + children.get(1).consolePrint() + ")";
-            }
-            case POW: {
-                return "(" + children.get(0).consolePrint() + " ^ " + children.get(1).consolePrint() + ")";
-            }
-            case NEGATION: {
-                return "-" + children.get(0).consolePrint();
-            }
-            case FACT: {
-                return children.get(0).consolePrint() + "!";
-            }
-            case ID:
-                return String.valueOf(val).split("\\*")[0];
-            case NUM:
-                return String.valueOf(val);
-            case ASSIGN:
-                return children.get(0).consolePrint();
-            case FUNC_DEF:
-                return children.get(0).consolePrint() + " => " + children.get(1).consolePrint();
-            case APPLICATION: {
-                StringBuilder sb = new StringBuilder();
-                sb.append("(").append(children.get(0).consolePrint()).append(")");
-                if (Objects.nonNull(children))
-                    for (int i = 1; i < children.size(); i++) {
-                        sb.append(children.get(i).consolePrint());
-                        if (i + 1 != children.size()) sb.append(",");
-                    }
-                return sb.toString();
-            }
-            case PARAM_LIST: {
-                StringBuilder sb = new StringBuilder();
-                sb.append("(");
-                if (Objects.nonNull(children)) for (int i = 0; i < children.size(); i++) {
-                    sb.append(children.get(i).consolePrint());
-                    if (i + 1 != children.size()) sb.append(",");
-                }
-                sb.append(")");
-                return sb.toString();
-            }
-            default:
-                return "";
-        }
+        return Printer.UNLIMITED.toString(this);
     }
 
 
     public enum Type {
-        PLUS, MINUS, MULT, DIV, FLOOR_DIV, MOD, POW, NUM, NEGATION, FACT, ASSIGN, ID, PARAM_LIST, FUNC_DEF, APPLICATION, FUNC_BODY
+        PLUS, MINUS, MULT, DIV, FLOOR_DIV, MOD, POW, NUM, NEGATION, FACT, ASSIGN, ID, PARAM_LIST, FUNC_DEF, APPLICATION, FUNC_BODY, BUILTIN
     }
 
 }
@@ -2,6 +2,8 @@ package edu.cs340.parser;
 
 import edu.cs340.lexer.Lexer;
 import edu.cs340.lexer.Token;
+import edu.cs340.metrics.Metrics;
+import edu.cs340.metrics.ParseEvent;
 
 import java.math.BigDecimal;
 import java.math.MathContext;
@@ -14,10 +16,22 @@ public class Parser {
     private Token lookahead;
 
     public static ASTNode parse(String src) {
+        if (!Metrics.enabled()) return new Parser(src).all();
+
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        long start = System.nanoTime();
+
         Parser p = new Parser(src);
-        ASTNode res = p.main();
-        if (p.lookahead.type() != Token.Type.EOF) {
-            p.fail(p.lookahead);
+        ASTNode res = p.all();
+
+        Metrics.parsed(System.nanoTime() - start);
+        Metrics.lexed(p.lex.tokens(), p.lex.nanos());
+        if (event.shouldCommit()) {
+            event.sourceLength = src.length();
+            event.tokens = p.lex.tokens();
+            event.lexNanos = p.lex.nanos();
+            event.commit();
         }
         return res;
     }
@@ -27,6 +41,14 @@ public class Parser {
         lookahead = lex.nextToken();
     }
 
+    private ASTNode all() {
+        ASTNode res = main();
+        if (lookahead.type() != Token.Type.EOF) {
+            fail(lookahead);
+        }
+        return res;
+    }
+
     private ASTNode main() {
         return assignment();
     }
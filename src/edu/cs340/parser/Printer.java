@@ -0,0 +1,332 @@
+package edu.cs340.parser;
+
+import edu.cs340.number.Num;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Writes trees straight to an {@link Appendable} in a single pass, in the same notation as
+ * {@link ASTNode#consolePrint()}.
+ *
+ * The tree is walked with an explicit stack, so deep residual trees neither build intermediate strings nor
+ * overflow the call stack. Output can be cut after a number of characters and subtrees below a depth can be
+ * elided; both are marked with "...". Large integers are converted to decimal in chunks, most significant first,
+ * so a truncated result never converts the digits it doesn't print.
+ */
+public final class Printer {
+
+    public static final Printer UNLIMITED = new Printer(0, 0);
+
+    private static final String ELLIPSIS = "...";
+
+    /* Integers below this many bits are left to BigInteger.toString. */
+    private static final int CHUNK_BITS = 4096;
+    private static final int LEAF_DIGITS = 18;
+
+    /* POWERS.get(k) is 10^(18 * 2^k), shared by every conversion. */
+    private static final List<BigInteger> POWERS = new ArrayList<>();
+
+    private final int maxChars;
+    private final int maxDepth;
+
+    /**
+     * @param maxChars characters written before the output is cut, 0 for no limit
+     * @param maxDepth depth below which subtrees are elided, 0 for no limit
+     */
+    public Printer(int maxChars, int maxDepth) {
+        this.maxChars = maxChars;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * The console printer, limited with the calc.print.chars and calc.print.depth system properties.
+     */
+    public static Printer defaults() {
+        return new Printer(Integer.getInteger("calc.print.chars", 0), Integer.getInteger("calc.print.depth", 0));
+    }
+
+    public String toString(ASTNode node) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            print(node, sb);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes node in console notation.
+     */
+    public void print(ASTNode node, Appendable out) throws IOException {
+        Sink sink = new Sink(out, maxChars);
+        try {
+            expression(node, sink);
+        } catch (Truncated ignored) {
+            out.append(ELLIPSIS);
+        }
+    }
+
+    /**
+     * Writes node as an indented tree, one node per line, like the parse command shows it.
+     */
+    public void tree(ASTNode node, Appendable out) throws IOException {
+        Sink sink = new Sink(out, maxChars);
+        Deque<ASTNode> nodes = new ArrayDeque<>();
+        Deque<Integer> depths = new ArrayDeque<>();
+        nodes.push(node);
+        depths.push(0);
+        try {
+            while (!nodes.isEmpty()) {
+                ASTNode n = nodes.pop();
+                int d = depths.pop();
+                for (int i = 0; i < d; i++) sink.append('\t');
+                if (maxDepth > 0 && d >= maxDepth && Objects.nonNull(n.children()) && !n.children().isEmpty()) {
+                    sink.append(ELLIPSIS).append('\n');
+                    continue;
+                }
+                sink.append(n.toString()).append('\n');
+                if (Objects.isNull(n.children())) continue;
+                for (int i = n.children().size() - 1; i >= 0; i--) {
+                    nodes.push(n.children().get(i));
+                    depths.push(d + 1);
+                }
+            }
+        } catch (Truncated ignored) {
+            out.append(ELLIPSIS).append('\n');
+        }
+    }
+
+    private void expression(ASTNode root, Sink out) throws IOException {
+        // Holds ASTNodes still to print and the Strings between them, depth is tracked alongside.
+        Deque<Object> work = new ArrayDeque<>();
+        Deque<Integer> depths = new ArrayDeque<>();
+        work.push(root);
+        depths.push(0);
+
+        while (!work.isEmpty()) {
+            Object item = work.pop();
+            int d = depths.pop();
+            if (item instanceof String) {
+                out.append((String) item);
+                continue;
+            }
+
+            ASTNode node = (ASTNode) item;
+            List<ASTNode> children = node.children();
+            if (maxDepth > 0 && d >= maxDepth && Objects.nonNull(children) && !children.isEmpty()) {
+                out.append(ELLIPSIS);
+                continue;
+            }
+
+            // Pushed in reverse, the last push is printed first.
+            switch (node.type()) {
+                case PLUS:
+                case MINUS:
+                case MULT:
+                case DIV:
+                case FLOOR_DIV:
+                case MOD:
+                case POW:
+                    push(work, depths, d, ")");
+                    push(work, depths, d + 1, children.get(1));
+                    push(work, depths, d, operator(node.type()));
+                    push(work, depths, d + 1, children.get(0));
+                    out.append('(');
+                    break;
+                case NEGATION:
+                    push(work, depths, d + 1, children.get(0));
+                    out.append('-');
+                    break;
+                case FACT:
+                    push(work, depths, d, "!");
+                    push(work, depths, d + 1, children.get(0));
+                    break;
+                case ID: {
+                    String name = String.valueOf(node.val());
+                    int star = name.indexOf('*');
+                    out.append(name, 0, star < 0 ? name.length() : star);
+                    break;
+                }
+                case NUM:
+                    number(node.val(), out);
+                    break;
+                case ASSIGN:
+                    push(work, depths, d + 1, children.get(0));
+                    break;
+                case FUNC_DEF:
+                    push(work, depths, d + 1, children.get(1));
+                    push(work, depths, d, " => ");
+                    push(work, depths, d + 1, children.get(0));
+                    break;
+                case APPLICATION:
+                    for (int i = children.size() - 1; i >= 1; i--) {
+                        if (i + 1 != children.size()) push(work, depths, d, ",");
+                        push(work, depths, d + 1, children.get(i));
+                    }
+                    push(work, depths, d, ")");
+                    push(work, depths, d + 1, children.get(0));
+                    out.append('(');
+                    break;
+                case PARAM_LIST:
+                    push(work, depths, d, ")");
+                    if (Objects.nonNull(children)) for (int i = children.size() - 1; i >= 0; i--) {
+                        if (i + 1 != children.size()) push(work, depths, d, ",");
+                        push(work, depths, d + 1, children.get(i));
+                    }
+                    out.append('(');
+                    break;
+                case BUILTIN:
+                    for (int i = children.size() - 1; i >= 0; i--) {
+                        push(work, depths, d, ")");
+                        push(work, depths, d + 1, children.get(i));
+                        push(work, depths, d, "(");
+                    }
+                    out.append(String.valueOf(node.val()));
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static void push(Deque<Object> work, Deque<Integer> depths, int depth, Object item) {
+        work.push(item);
+        depths.push(depth);
+    }
+
+    private static String operator(ASTNode.Type type) {
+        switch (type) {
+            case PLUS:
+                return " + ";
+            case MINUS:
+                return " - ";
+            case MULT:
+                return " * ";
+            case DIV:
+                return " / ";
+            case FLOOR_DIV:
+                return " // ";
+            case MOD:
+                return " % ";
+            default:
+                return " ^ ";
+        }
+    }
+
+    private static void number(Object val, Sink out) throws IOException {
+        if (val instanceof Num && ((Num) val).isInteger()) {
+            integer(((Num) val).numerator(), out);
+        } else if (val instanceof BigDecimal && ((BigDecimal) val).scale() <= 0) {
+            integer(((BigDecimal) val).toBigInteger(), out);
+        } else {
+            out.append(String.valueOf(val));
+        }
+    }
+
+    /**
+     * Divide and conquer conversion: the value is split around 10^(18 * 2^k) and both halves are written
+     * recursively, the lower one zero padded, so only the top level ever deals with the full number.
+     */
+    private static void integer(BigInteger value, Sink out) throws IOException {
+        if (value.bitLength() < CHUNK_BITS) {
+            out.append(value.toString());
+            return;
+        }
+        if (value.signum() < 0) {
+            out.append('-');
+            value = value.negate();
+        }
+
+        // Smallest k with value < 10^(18 * 2^(k+1)), from the digit count estimated from the bit length.
+        long digits = (long) (value.bitLength() * 0.30103) + 1;
+        int k = 0;
+        while ((long) LEAF_DIGITS << (k + 1) < digits) k++;
+        chunk(value, k, false, out);
+    }
+
+    private static void chunk(BigInteger value, int k, boolean pad, Sink out) throws IOException {
+        int width = LEAF_DIGITS << (k + 1);
+        if (k < 0 || value.bitLength() < CHUNK_BITS) {
+            String s = value.toString();
+            if (pad) for (int i = s.length(); i < width; i++) out.append('0');
+            out.append(s);
+            return;
+        }
+
+        BigInteger[] qr = value.divideAndRemainder(power(k));
+        if (!pad && qr[0].signum() == 0) {
+            chunk(qr[1], k - 1, false, out);
+        } else {
+            chunk(qr[0], k - 1, pad, out);
+            chunk(qr[1], k - 1, true, out);
+        }
+    }
+
+    private static BigInteger power(int k) {
+        synchronized (POWERS) {
+            if (POWERS.isEmpty()) POWERS.add(BigInteger.TEN.pow(LEAF_DIGITS));
+            while (POWERS.size() <= k) {
+                BigInteger last = POWERS.get(POWERS.size() - 1);
+                POWERS.add(last.multiply(last));
+            }
+            return POWERS.get(k);
+        }
+    }
+
+    /**
+     * Counts what goes out and stops the walk once the character limit is reached.
+     */
+    private static final class Sink {
+        private final Appendable out;
+        private final long limit;
+        private long written;
+
+        Sink(Appendable out, int maxChars) {
+            this.out = out;
+            this.limit = maxChars > 0 ? maxChars : Long.MAX_VALUE;
+        }
+
+        Sink append(char c) throws IOException {
+            if (written >= limit) throw Truncated.INSTANCE;
+            out.append(c);
+            written++;
+            return this;
+        }
+
+        Sink append(CharSequence s) throws IOException {
+            return append(s, 0, s.length());
+        }
+
+        Sink append(CharSequence s, int start, int end) throws IOException {
+            long room = limit - written;
+            if (end - start > room) {
+                out.append(s, start, start + (int) room);
+                written = limit;
+                throw Truncated.INSTANCE;
+            }
+            out.append(s, start, end);
+            written += end - start;
+            return this;
+        }
+    }
+
+    /* Thrown only to unwind out of the walk, so it carries no stack trace. */
+    private static final class Truncated extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        static final Truncated INSTANCE = new Truncated();
+
+        private Truncated() {
+            super(null, null, false, false);
+        }
+    }
+}
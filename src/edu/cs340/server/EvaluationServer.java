@@ -0,0 +1,210 @@
+package edu.cs340.server;
+
+import edu.cs340.Main;
+import edu.cs340.interpreter.Environment;
+import edu.cs340.interpreter.Interpreter;
+import edu.cs340.parser.ASTNode;
+import edu.cs340.parser.Printer;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Line based evaluation server bound to the loopback interface.
+ *
+ * Every request is a single line of the form {@code session-id<TAB>expression}. Each response is a single line,
+ * either {@code session-id<TAB>OK<TAB>result} or {@code session-id<TAB>ERR<TAB>message}, written in the same order
+ * as the requests were received on that connection, so clients may pipeline as many requests as they like.
+ * Every session id owns its own variable environment, shared by all connections that use it.
+ *
+ * A session ends with the request {@code session-id<TAB>close session}, or once it was idle for
+ * calc.server.idle.seconds (1800 by default). Idle sessions are dropped whenever a new one starts, and beyond
+ * calc.server.sessions sessions (1024 by default) the least recently used one is dropped as well. A request for a
+ * session that ended starts it again with only the default functions.
+ *
+ * Requests longer than calc.server.request.chars characters (65536 by default) are answered with an error without
+ * being kept in memory. Errors are reported with the same messages the console shows.
+ */
+public class EvaluationServer {
+
+    public static final int DEFAULT_PORT = 7340;
+
+    private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(Long.getLong("calc.server.idle.seconds", 1800L));
+    private static final int MAX_SESSIONS = Math.max(1, Integer.getInteger("calc.server.sessions", 1024));
+    private static final int MAX_REQUEST_CHARS = Math.max(1, Integer.getInteger("calc.server.request.chars", 65536));
+    private static final String CLOSE_SESSION = "close session";
+
+    private final int port;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private volatile ServerSocket serverSocket;
+
+    public EvaluationServer(int port) {
+        this.port = port;
+    }
+
+    public void serve() throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        System.out.println("Listening on " + serverSocket.getLocalSocketAddress());
+
+        ExecutorService connections = newConnectionExecutor();
+        try {
+            while (!serverSocket.isClosed()) {
+                Socket client;
+                try {
+                    client = serverSocket.accept();
+                } catch (IOException ex) {
+                    if (serverSocket.isClosed()) break;
+                    throw ex;
+                }
+                connections.execute(() -> handle(client));
+            }
+        } finally {
+            connections.shutdown();
+        }
+    }
+
+    public void close() throws IOException {
+        if (Objects.nonNull(serverSocket)) serverSocket.close();
+        sessions.clear();
+    }
+
+    public int localPort() {
+        return Objects.isNull(serverSocket) ? port : serverSocket.getLocalPort();
+    }
+
+    /**
+     * Ends a session and drops its variables. Returns false when there was no such session.
+     */
+    public boolean closeSession(String sessionId) {
+        return Objects.nonNull(sessions.remove(sessionId));
+    }
+
+    public int sessionCount() {
+        return sessions.size();
+    }
+
+    private void handle(Socket client) {
+        try (client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = readRequest(in)) != null) {
+                out.write(line.length() > MAX_REQUEST_CHARS ? tooLong(line) : respond(line));
+                out.write('\n');
+                // Only flush once the pipelined requests already received have all been answered.
+                if (!in.ready()) out.flush();
+            }
+            out.flush();
+        } catch (IOException ex) {
+            System.out.println("Connection dropped: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * The next line without its terminator, or null at the end of the stream. Of a line longer than
+     * {@link #MAX_REQUEST_CHARS} only the first {@code MAX_REQUEST_CHARS + 1} characters are kept, the rest is skipped.
+     */
+    private static String readRequest(BufferedReader in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) >= 0 && c != '\n') {
+            if (line.length() <= MAX_REQUEST_CHARS) line.append((char) c);
+        }
+        if (c < 0 && line.length() == 0) return null;
+
+        int end = line.length();
+        if (end > 0 && line.charAt(end - 1) == '\r') line.setLength(end - 1);
+        return line.toString();
+    }
+
+    private static String tooLong(String request) {
+        int tab = request.indexOf('\t');
+        String sessionId = tab < 0 ? "" : request.substring(0, tab);
+        return sessionId + "\tERR\tRequest longer than " + MAX_REQUEST_CHARS + " characters";
+    }
+
+    public String respond(String request) {
+        int tab = request.indexOf('\t');
+        if (tab < 0) return "\tERR\tExpected a line of the form session-id<TAB>expression";
+
+        String sessionId = request.substring(0, tab);
+        String expression = request.substring(tab + 1);
+        if (expression.trim().equalsIgnoreCase(CLOSE_SESSION))
+            return sessionId + "\tOK\t" + (closeSession(sessionId) ? "closed" : "no such session");
+
+        Session session = session(sessionId);
+        try {
+            ASTNode res = session.evaluate(expression);
+            StringBuilder sb = new StringBuilder(sessionId).append("\tOK\t");
+            if (Objects.nonNull(res)) Printer.UNLIMITED.print(res, sb);
+            return sb.toString();
+        } catch (IOException | RuntimeException ex) {
+            // Responses are single lines, whatever the message says.
+            return sessionId + "\tERR\t" + Main.errorMessage(ex).replace('\n', ' ').replace('\r', ' ');
+        }
+    }
+
+    private Session session(String sessionId) {
+        Session session = sessions.get(sessionId);
+        if (Objects.isNull(session)) {
+            evict();
+            session = sessions.computeIfAbsent(sessionId, id -> new Session());
+        }
+        session.lastUsed = System.nanoTime();
+        return session;
+    }
+
+    /**
+     * Drops the idle sessions, then the least recently used ones until a new session fits.
+     */
+    private synchronized void evict() {
+        long now = System.nanoTime();
+        sessions.values().removeIf(s -> now - s.lastUsed > IDLE_NANOS);
+        while (sessions.size() >= MAX_SESSIONS) {
+            sessions.entrySet().stream()
+                    .min(Comparator.comparingLong(e -> e.getValue().lastUsed))
+                    .ifPresent(e -> sessions.remove(e.getKey(), e.getValue()));
+        }
+    }
+
+    /**
+     * Uses a virtual thread per connection when the running JVM supports them, and a cached thread pool otherwise.
+     */
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException ex) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Evaluates one request at a time. It waits on a lock rather than a monitor, a virtual thread blocked on a
+     * monitor would keep its carrier thread for the whole evaluation in front of it.
+     */
+    private static class Session {
+        private final Environment vars = Interpreter.newEnvironment();
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile long lastUsed = System.nanoTime();
+
+        ASTNode evaluate(String expression) {
+            lock.lock();
+            try {
+                return Interpreter.withEnvironment(vars, () -> Main.evaluate(expression));
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
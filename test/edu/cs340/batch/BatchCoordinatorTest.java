@@ -0,0 +1,58 @@
+package edu.cs340.batch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BatchCoordinatorTest {
+
+    private static final String CRASH = "crash";
+
+    @Test
+    void workerRecoversFromPoisonLinesInManyShards(@TempDir Path dir) throws IOException, InterruptedException {
+        List<String> lines = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            // One poison line in each of five shards: ten crashes in total, never more than two in a row.
+            String line = i % 64 == 10 ? CRASH : Integer.toString(i);
+            lines.add(line);
+            expected.add(line.equals(CRASH) ? "ERR\tWorker crashed evaluating this expression" : "OK\t" + line);
+        }
+        Path input = Files.write(dir.resolve("input.txt"), lines, StandardCharsets.UTF_8);
+
+        StringWriter out = new StringWriter();
+        long total = new BatchCoordinator(input, 1, null, List.of(EchoWorker.class.getName())).run(out);
+
+        assertEquals(300, total);
+        assertEquals(expected, out.toString().lines().toList());
+    }
+
+    /**
+     * Answers every line with itself and dies on {@value #CRASH}, without loading the interpreter.
+     */
+    public static class EchoWorker {
+        public static void main(String[] args) throws IOException {
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            PrintStream out = new PrintStream(System.out, false, StandardCharsets.UTF_8);
+            String line;
+            while ((line = in.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (line.substring(tab + 1).equals(CRASH)) {
+                    out.flush();
+                    Runtime.getRuntime().halt(1);
+                }
+                out.println(line.substring(0, tab) + "\tOK\t" + line.substring(tab + 1));
+                if (!in.ready()) out.flush();
+            }
+            out.flush();
+        }
+    }
+}
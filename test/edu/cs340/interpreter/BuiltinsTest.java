@@ -0,0 +1,56 @@
+package edu.cs340.interpreter;
+
+import edu.cs340.Main;
+import edu.cs340.parser.Printer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BuiltinsTest {
+
+    private final Environment env = Interpreter.newEnvironment();
+
+    private String evaluate(String line) {
+        return Interpreter.withEnvironment(env, () -> Printer.UNLIMITED.toString(Main.evaluate(line)));
+    }
+
+    private String evaluate(String line, long maxSteps) {
+        Budget budget = new Budget(maxSteps, null, Integer.MAX_VALUE, Long.MAX_VALUE);
+        return Interpreter.withBudget(budget, () -> evaluate(line));
+    }
+
+    @Test
+    void aggregatesOverRanges() {
+        assertEquals("5050", evaluate("sum(f(i) => i)(1)(100)"));
+        assertEquals("3628800", evaluate("product(f(i) => i)(1)(10)"));
+        assertEquals("1234", evaluate("fold(f(acc) => f(i) => acc * 10 + i)(0)(1)(4)"));
+        assertEquals("-5", evaluate("sum(f(i) => i)(-5)(4)"));
+    }
+
+    @Test
+    void splitRangesGiveTheSequentialResult() {
+        assertEquals("50005000", evaluate("sum(f(i) => i)(1)(10000)"));
+        assertEquals(evaluate("fold(f(acc) => f(i) => acc + i / 3)(0)(1)(5000)"), evaluate("sum(f(i) => i / 3)(1)(5000)"));
+    }
+
+    @Test
+    void emptyAndReversedRangesGiveTheIdentity() {
+        assertEquals("0", evaluate("sum(f(i) => i)(5)(4)"));
+        assertEquals("1", evaluate("product(f(i) => i)(5)(4)"));
+        assertEquals("7", evaluate("fold(f(acc) => f(i) => acc + i)(7)(5)(4)"));
+        assertEquals("0", evaluate("sum(f(i) => i)(10)(1)"));
+        assertEquals("1", evaluate("product(f(i) => 0)(10)(1)"));
+    }
+
+    @Test
+    void rejectsFractionalBounds() {
+        assertThrows(IllegalStateException.class, () -> evaluate("sum(f(i) => i)(1.5)(3)"));
+    }
+
+    @Test
+    void splitPiecesShareOneBudget() {
+        // About three steps per term: every piece fits in the limit on its own, the whole range does not.
+        assertThrows(BudgetExceededException.class, () -> evaluate("sum(f(i) => i)(1)(10000)", 15_000));
+        assertEquals("50005000", evaluate("sum(f(i) => i)(1)(10000)", 40_000));
+    }
+}
@@ -0,0 +1,60 @@
+package edu.cs340.interpreter;
+
+import edu.cs340.Main;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledExpressionTest {
+
+    private final Environment env = Interpreter.newEnvironment();
+
+    private CompiledExpression compile(String src, String... variables) {
+        return Interpreter.withEnvironment(env, () -> Interpreter.compile(src, variables));
+    }
+
+    @Test
+    void threadsShareOneSnapshotOfTheDefinitions() throws Exception {
+        Interpreter.withEnvironment(env, () -> Main.evaluate("let k = 3"));
+        Interpreter.withEnvironment(env, () -> Main.evaluate("let scale = f(x) => x * k"));
+        CompiledExpression expr = compile("scale(a) + sum(f(i) => i)(1)(b)", "a", "b");
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                long a = i;
+                long b = i % 50;
+                results.add(pool.submit(() -> expr.evaluateLong(a, b)));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                long b = i % 50;
+                assertEquals(3L * i + b * (b + 1) / 2, results.get(i).get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void definitionsAreCapturedAtCompileTime() {
+        Interpreter.withEnvironment(env, () -> Main.evaluate("let k = 3"));
+        CompiledExpression expr = compile("a * k", "a");
+        Interpreter.withEnvironment(env, () -> Main.evaluate("let k = 5"));
+
+        assertEquals(6L, expr.evaluateLong(2));
+        assertEquals(List.of("a"), expr.variables());
+    }
+
+    @Test
+    void snapshotIsReadOnly() {
+        Environment frozen = env.frozen();
+        assertTrue(frozen.containsKey("sqrt"));
+        assertThrows(IllegalStateException.class, () -> frozen.put("k", frozen.get("sqrt")));
+        assertThrows(IllegalArgumentException.class, () -> compile("let k = 1"));
+    }
+}
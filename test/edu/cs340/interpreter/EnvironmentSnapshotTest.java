@@ -0,0 +1,108 @@
+package edu.cs340.interpreter;
+
+import edu.cs340.Main;
+import edu.cs340.parser.Printer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EnvironmentSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    private static String evaluate(Environment env, String line) {
+        return Interpreter.withEnvironment(env, () -> Printer.UNLIMITED.toString(Main.evaluate(line)));
+    }
+
+    @Test
+    void savedDefinitionsLoadBack() throws IOException {
+        Path file = dir.resolve("defs.bin");
+        Environment saved = Interpreter.newEnvironment();
+        evaluate(saved, "let half = f(x) => x / 2");
+        evaluate(saved, "let big = 2 ^ 100");
+        evaluate(saved, "let third = 1 / 3");
+        int written = Interpreter.withEnvironment(saved, () -> {
+            try {
+                return Interpreter.save(file);
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        assertEquals(3, written);
+
+        Environment loaded = Interpreter.newEnvironment();
+        int read = Interpreter.withEnvironment(loaded, () -> {
+            try {
+                return Interpreter.load(file);
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        assertEquals(3, read);
+        assertEquals("1267650600228229401496703205376", evaluate(loaded, "big"));
+        assertEquals("1", evaluate(loaded, "third * 3"));
+        assertEquals("21", evaluate(loaded, "half(42)"));
+    }
+
+    @Test
+    void computedValuesAreSavedAsTheirSourceAndRecomputed() throws IOException {
+        Path file = dir.resolve("computed.bin");
+        Environment saved = Interpreter.newEnvironment();
+        evaluate(saved, "let a = 1");
+        evaluate(saved, "let b = 10 / a");
+        evaluate(saved, "let a = 0");
+        Interpreter.withEnvironment(saved, () -> {
+            try {
+                return Interpreter.save(file);
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+
+        Environment loaded = Interpreter.newEnvironment();
+        Interpreter.withEnvironment(loaded, () -> {
+            try {
+                return Interpreter.load(file);
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        assertEquals("(10 / a)", Printer.UNLIMITED.toString(loaded.source("b")));
+        evaluate(loaded, "let a = 4");
+        assertEquals("2.5", evaluate(loaded, "b"));
+    }
+
+    @Test
+    void rejectsBadMagic() throws IOException {
+        Path file = header(0x12345678, 1);
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> EnvironmentSnapshot.read(file, new Environment()));
+        assertTrue(ex.getMessage().startsWith("Not a calculator snapshot"), ex.getMessage());
+    }
+
+    @Test
+    void rejectsUnsupportedVersion() throws IOException {
+        Path file = header(0x43414C43, 99);
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> EnvironmentSnapshot.read(file, new Environment()));
+        assertEquals("Unsupported snapshot version: 99", ex.getMessage());
+    }
+
+    private Path header(int magic, int version) throws IOException {
+        Path file = dir.resolve("header.bin");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(magic);
+            out.writeInt(version);
+            out.writeInt(0);
+            out.writeInt(0);
+        }
+        return file;
+    }
+}
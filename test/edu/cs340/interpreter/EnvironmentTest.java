@@ -0,0 +1,58 @@
+package edu.cs340.interpreter;
+
+import edu.cs340.Main;
+import edu.cs340.parser.Printer;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EnvironmentTest {
+
+    private final Environment env = Interpreter.newEnvironment();
+
+    private String evaluate(String line) {
+        return Interpreter.withEnvironment(env, () -> Printer.UNLIMITED.toString(Main.evaluate(line)));
+    }
+
+    @Test
+    void recomputesDependentsOnRedefinition() {
+        evaluate("let a = 1");
+        evaluate("let b = a * 2");
+        evaluate("let a = 21");
+        assertEquals("42", evaluate("b"));
+    }
+
+    @Test
+    void recomputesLongChainsWithoutNesting() {
+        evaluate("let v0 = 1");
+        for (int i = 1; i <= 1000; i++) evaluate("let v" + i + " = v" + (i - 1) + " + 1");
+        evaluate("let v0 = 5");
+        assertEquals("1005", evaluate("v1000"));
+    }
+
+    @Test
+    void failedRecomputeKeepsTheBinding() {
+        evaluate("let a = 1");
+        evaluate("let b = 10 / a");
+        evaluate("let a = 0");
+        assertThrows(ArithmeticException.class, () -> evaluate("b"));
+        assertThrows(ArithmeticException.class, () -> evaluate("b"));
+        evaluate("let a = 2");
+        assertEquals("5", evaluate("b"));
+    }
+
+    @Test
+    void forEachDoesNotEvaluatePendingBindings() {
+        evaluate("let a = 1");
+        evaluate("let b = 10 / a");
+        evaluate("let a = 0");
+
+        Map<String, String> seen = new TreeMap<>();
+        env.forEach((name, value) -> seen.put(name, Printer.UNLIMITED.toString(value)));
+        assertEquals("0", seen.get("a"));
+        assertEquals("(10 / a)", seen.get("b"));
+    }
+}
@@ -0,0 +1,47 @@
+package edu.cs340.interpreter;
+
+import edu.cs340.Main;
+import edu.cs340.parser.Printer;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NormalizerTest {
+
+    private static String evaluate(String line) {
+        return Printer.UNLIMITED.toString(Main.evaluate(line));
+    }
+
+    @Test
+    void collectsRepeatedFactorIntoPower() {
+        assertEquals("(x ^ 2)", evaluate("x^2"));
+        assertEquals("(3 * (x ^ 2))", evaluate("x*x*3"));
+    }
+
+    @Test
+    void expandsProducts() {
+        assertEquals("((x ^ 2) - 1)", evaluate("(x+1)*(x-1)"));
+        assertEquals("(((x ^ 2) + (2 * (x * y))) + (y ^ 2))", evaluate("(x+y)^2"));
+    }
+
+    @Test
+    void leavesExpansionsThatWouldBlowUpAlone() {
+        String res = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> evaluate("(a+b+c+d+e+g+h+k)^16"));
+        assertEquals("((((((((a + b) + c) + d) + e) + g) + h) + k) ^ 16)", res);
+    }
+
+    @Test
+    void expansionCountsAgainstTheBudget() {
+        Budget tight = new Budget(200, null, Integer.MAX_VALUE, Long.MAX_VALUE);
+        assertThrows(BudgetExceededException.class, () -> Interpreter.withBudget(tight, () -> evaluate("(a+b+c)^16")));
+    }
+
+    @Test
+    void reducesCommonFactorsOfQuotients() {
+        assertEquals("(0.75 / x)", evaluate("1/(2*x) + 1/(4*x)"));
+        assertEquals("(1 / y)", evaluate("x/(x*y)"));
+        assertEquals("(3 / (x + 1))", evaluate("1/(x+1) + 1/(x+1) + 1/(x+1)"));
+    }
+}
@@ -0,0 +1,61 @@
+package edu.cs340.interpreter;
+
+import edu.cs340.Main;
+import edu.cs340.metrics.Metrics;
+import edu.cs340.parser.Printer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpecializationsTest {
+
+    private final Environment env = Interpreter.newEnvironment();
+
+    private String evaluate(String line) {
+        return Interpreter.withEnvironment(env, () -> Printer.UNLIMITED.toString(Main.evaluate(line)));
+    }
+
+    @Test
+    void argumentsMatchByValueWhateverTheirScale() {
+        assertEquals("3", evaluate("root(2)(9)"));
+
+        Metrics.reset();
+        assertEquals("4", evaluate("root(2.0)(16)"));
+        assertEquals("5", evaluate("root(2.00)(25)"));
+        assertEquals(0, Metrics.snapshot().get("specializations.misses"));
+        assertTrue(Metrics.snapshot().get("specializations.hits") >= 2);
+    }
+
+    @Test
+    void redefinitionStopsHittingOldEntries() {
+        assertEquals("3", evaluate("root(2)(9)"));
+        evaluate("let root = f(x) => f(y) => x * y");
+        assertEquals("18", evaluate("root(2)(9)"));
+    }
+
+    @Test
+    void threadsShareTheCacheWithinItsCapacity() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                int n = i % 300 + 1;
+                results.add(pool.submit(() -> Interpreter.withEnvironment(env,
+                        () -> Printer.UNLIMITED.toString(Main.evaluate("root(1)(" + n + ")")))));
+                results.add(pool.submit(() -> Interpreter.withEnvironment(env,
+                        () -> Printer.UNLIMITED.toString(Main.evaluate("gt(" + n + ")(0)")))));
+            }
+            for (int i = 0; i < results.size(); i += 2) {
+                assertEquals(Integer.toString(i / 2 % 300 + 1), results.get(i).get(30, TimeUnit.SECONDS));
+                assertEquals("1", results.get(i + 1).get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertTrue(Specializations.size() <= Integer.getInteger("calc.specialize.size", 256));
+    }
+}
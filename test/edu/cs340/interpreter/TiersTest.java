@@ -0,0 +1,65 @@
+package edu.cs340.interpreter;
+
+import edu.cs340.Main;
+import edu.cs340.metrics.Metrics;
+import edu.cs340.parser.Printer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TiersTest {
+
+    /* Applications that make a function hot, comfortably above the default calc.tier.threshold. */
+    private static final int HOT = 1500;
+
+    private final Environment env = Interpreter.newEnvironment();
+
+    private String evaluate(String line) {
+        return Interpreter.withEnvironment(env, () -> Printer.UNLIMITED.toString(Main.evaluate(line)));
+    }
+
+    private void heat(String fn) {
+        evaluate("sum(f(i) => " + fn + "(i))(1)(" + HOT + ")");
+    }
+
+    @Test
+    void hotFunctionsArePromoted() {
+        evaluate("let sq = f(x) => x * x");
+        assertNull(env.tiers().applied("sq", env));
+
+        Metrics.reset();
+        assertEquals("1126125250", evaluate("sum(f(i) => sq(i))(1)(" + HOT + ")"));
+        assertTrue(Metrics.snapshot().get("tier.promotions") >= 1);
+        assertNotNull(env.tiers().applied("sq", env));
+        assertEquals("49", evaluate("sq(7)"));
+    }
+
+    @Test
+    void redefinitionDeoptimizes() {
+        evaluate("let sq = f(x) => x * x");
+        heat("sq");
+        assertNotNull(env.tiers().applied("sq", env));
+
+        Metrics.reset();
+        evaluate("let sq = f(x) => x + 1");
+        assertTrue(Metrics.snapshot().get("tier.deoptimizations") >= 1);
+        assertNull(env.tiers().applied("sq", env));
+        assertEquals("8", evaluate("sq(7)"));
+    }
+
+    @Test
+    void redefiningAResolvedNameDeoptimizesItsUsers() {
+        evaluate("let k = 2");
+        evaluate("let scale = f(x) => x * k");
+        heat("scale");
+        assertEquals("14", evaluate("scale(7)"));
+
+        evaluate("let k = 3");
+        assertEquals("21", evaluate("scale(7)"));
+
+        evaluate("let double = f(x) => scale(x) * 2");
+        heat("double");
+        evaluate("let scale = f(x) => x");
+        assertEquals("14", evaluate("double(7)"));
+    }
+}
@@ -0,0 +1,77 @@
+package edu.cs340.number;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NumTest {
+
+    private static final BigInteger TWO_TO_63 = BigInteger.ONE.shiftLeft(63);
+
+    @Test
+    void longBoundsStaySmall() {
+        Num min = Num.of(Long.MIN_VALUE);
+        assertEquals(min, Num.rational(BigInteger.valueOf(Long.MIN_VALUE), BigInteger.ONE));
+        assertEquals(min, min.subtract(Num.ONE).add(Num.ONE));
+        assertInstanceOf(SmallRational.class, min.subtract(Num.ONE).add(Num.ONE));
+
+        Num max = Num.of(Long.MAX_VALUE);
+        assertEquals(max, max.add(Num.ONE).subtract(Num.ONE));
+        assertInstanceOf(SmallRational.class, max.add(Num.ONE).subtract(Num.ONE));
+    }
+
+    @Test
+    void overflowPromotesToBigRational() {
+        Num sum = Num.of(Long.MAX_VALUE).add(Num.ONE);
+        assertInstanceOf(BigRational.class, sum);
+        assertEquals(TWO_TO_63, sum.numerator());
+
+        Num product = Num.of(Long.MAX_VALUE).multiply(Num.of(2));
+        assertEquals(BigInteger.valueOf(Long.MAX_VALUE).shiftLeft(1), product.numerator());
+
+        assertEquals(TWO_TO_63, Num.of(Long.MIN_VALUE).negate().numerator());
+
+        Num tiny = Num.ONE.divide(Num.of(Long.MAX_VALUE)).divide(Num.of(Long.MAX_VALUE));
+        assertEquals(BigInteger.valueOf(Long.MAX_VALUE).pow(2), tiny.denominator());
+    }
+
+    @Test
+    void resultsAreInLowestTerms() {
+        Num q = Num.of(Long.MIN_VALUE).divide(Num.of(6));
+        assertEquals(BigInteger.valueOf(Long.MIN_VALUE / 2), q.numerator());
+        assertEquals(BigInteger.valueOf(3), q.denominator());
+        assertEquals(Num.of(new BigDecimal("0.5")), Num.of(2).reciprocal());
+        assertEquals(Num.of(-1).divide(Num.of(2)), Num.ONE.divide(Num.of(-2)));
+    }
+
+    @Test
+    void decimalsAreContagious() {
+        Num half = Num.decimal(new BigDecimal("0.5"));
+        Num sum = Num.ONE.divide(Num.of(2)).add(half);
+        assertFalse(sum.isExact());
+        assertTrue(sum.isOne());
+
+        // The exact third is rounded to the output scale before it meets the decimal.
+        Num sixth = Num.ONE.divide(Num.of(3)).multiply(half);
+        assertFalse(sixth.isExact());
+        assertEquals(0, sixth.toBigDecimal().compareTo(new BigDecimal("0.1666666666666665")));
+        assertEquals(0, Num.of(3).compareTo(Num.decimal(new BigDecimal("3.000"))));
+    }
+
+    @Test
+    void zeroHasNoSign() {
+        assertEquals(Num.ZERO, Num.of(new BigDecimal("-0.00")));
+        assertEquals(Num.ZERO, Num.ZERO.negate());
+        assertEquals(Num.ZERO, Num.of(-5).add(Num.of(5)));
+        assertEquals(Num.ZERO, Num.ZERO.divide(Num.of(-7)));
+        assertEquals("0", Num.ZERO.negate().toString());
+
+        Num negativeZero = Num.decimal(new BigDecimal("-0.0"));
+        assertTrue(negativeZero.isZero());
+        assertEquals(0, negativeZero.signum());
+        assertThrows(ArithmeticException.class, () -> Num.ONE.divide(negativeZero));
+    }
+}
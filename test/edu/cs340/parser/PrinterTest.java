@@ -0,0 +1,61 @@
+package edu.cs340.parser;
+
+import edu.cs340.number.Num;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrinterTest {
+
+    private static ASTNode number(BigInteger value) {
+        return new ASTNode(ASTNode.Type.NUM, Num.rational(value, BigInteger.ONE));
+    }
+
+    @Test
+    void largeIntegersMatchBigInteger() {
+        for (BigInteger value : new BigInteger[]{
+                BigInteger.valueOf(7).pow(20_000),
+                BigInteger.valueOf(7).pow(20_000).negate(),
+                BigInteger.TEN.pow(5_000).add(BigInteger.ONE),
+                BigInteger.TEN.pow(5_000).subtract(BigInteger.ONE),
+                BigInteger.ONE.shiftLeft(4096)}) {
+            assertEquals(value.toString(), Printer.UNLIMITED.toString(number(value)));
+        }
+    }
+
+    @Test
+    void truncatesAfterMaxChars() {
+        BigInteger value = BigInteger.valueOf(3).pow(50_000);
+        String full = value.toString();
+
+        assertEquals(full.substring(0, 40) + "...", new Printer(40, 0).toString(number(value)));
+        assertEquals(full, new Printer(full.length(), 0).toString(number(value)));
+        assertEquals("12345", new Printer(5, 0).toString(number(BigInteger.valueOf(12345))));
+        assertEquals("1234...", new Printer(4, 0).toString(number(BigInteger.valueOf(12345))));
+    }
+
+    @Test
+    void matchesConsolePrint() {
+        ASTNode tree = Parser.parse("a + b * (c - d) / -e ^ 2");
+        assertEquals(tree.consolePrint(), Printer.UNLIMITED.toString(tree));
+    }
+
+    @Test
+    void elidesBelowMaxDepth() {
+        ASTNode tree = Parser.parse("a + (b + (c + (d + e)))");
+        String shallow = new Printer(0, 2).toString(tree);
+        assertTrue(shallow.contains("..."), shallow);
+        assertTrue(shallow.length() < Printer.UNLIMITED.toString(tree).length(), shallow);
+    }
+
+    @Test
+    void deepTreesDoNotOverflowTheStack() {
+        ASTNode tree = new ASTNode(ASTNode.Type.ID, "x");
+        for (int i = 0; i < 100_000; i++) tree = new ASTNode(ASTNode.Type.PLUS, "+", Parser.ls(tree, new ASTNode(ASTNode.Type.ID, "x")));
+        String printed = new Printer(1_000, 0).toString(tree);
+        assertEquals(1_003, printed.length());
+        assertTrue(printed.endsWith("..."));
+    }
+}
@@ -0,0 +1,95 @@
+package edu.cs340.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EvaluationServerTest {
+
+    private EvaluationServer server;
+    private Thread serving;
+
+    @BeforeEach
+    void start() throws InterruptedException {
+        server = new EvaluationServer(0);
+        serving = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+        serving.setDaemon(true);
+        serving.start();
+        while (server.localPort() == 0) Thread.sleep(10);
+    }
+
+    @AfterEach
+    void stop() throws IOException, InterruptedException {
+        server.close();
+        serving.join(5_000);
+    }
+
+    @Test
+    void answersPipelinedRequestsInOrderPerSession() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.localPort());
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            out.write("a\tlet x = 2\n");
+            out.write("a\tx * 3\n");
+            out.write("b\tx\n");
+            out.write("a\t1 / 0\n");
+            out.write("a\tclose session\n");
+            out.write("a\tx\n");
+            out.flush();
+
+            assertEquals("a\tOK\t2", in.readLine());
+            assertEquals("a\tOK\t6", in.readLine());
+            assertEquals("b\tOK\tx", in.readLine());
+            assertEquals("a\tERR\tSomething went wrong: Division by zero", in.readLine());
+            assertEquals("a\tOK\tclosed", in.readLine());
+            assertEquals("a\tOK\tx", in.readLine());
+        }
+        assertEquals(2, server.sessionCount());
+    }
+
+    @Test
+    void rejectsOversizedRequestsAndKeepsServing() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.localPort());
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            out.write("a\t");
+            for (int i = 0; i < 50_000; i++) out.write("1 + ");
+            out.write("1\n");
+            out.write("a\t6 * 7\r\n");
+            out.flush();
+
+            assertEquals("a\tERR\tRequest longer than 65536 characters", in.readLine());
+            assertEquals("a\tOK\t42", in.readLine());
+        }
+    }
+
+    @Test
+    void reportsErrorsLikeTheConsole() {
+        assertEquals("s\tERR\tSomething went wrong: Division by zero", server.respond("s\t1 // 0"));
+        String parseError = server.respond("s\t1 +");
+        assertTrue(parseError.startsWith("s\tERR\t") && !parseError.contains("Something went wrong"), parseError);
+    }
+
+    @Test
+    void closeSessionDropsItsVariables() {
+        server.respond("s\tlet y = 5");
+        assertEquals(1, server.sessionCount());
+        assertEquals("s\tOK\tclosed", server.respond("s\tclose session"));
+        assertEquals("s\tOK\tno such session", server.respond("s\tclose session"));
+        assertEquals(0, server.sessionCount());
+    }
+}